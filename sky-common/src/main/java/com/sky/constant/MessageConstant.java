@@ -13,6 +13,8 @@ public class MessageConstant {
     public static final String CATEGORY_BE_RELATED_BY_SETMEAL = "当前分类关联了套餐,不能删除";
     public static final String CATEGORY_BE_RELATED_BY_DISH = "当前分类关联了菜品,不能删除";
     public static final String SHOPPING_CART_IS_NULL = "购物车数据为空，不能下单";
+    public static final String SHOPPING_CART_VERSION_INVALID = "购物车版本号无效";
+    public static final String SHOPPING_CART_BATCH_INVALID = "购物车批量修改数据无效";
     public static final String ADDRESS_BOOK_IS_NULL = "用户地址为空，不能下单";
     public static final String LOGIN_FAILED = "登录失败";
     public static final String UPLOAD_FAILED = "文件上传失败";
@@ -23,6 +25,17 @@ public class MessageConstant {
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String ORDER_CURSOR_INVALID = "分页游标无效";
+    public static final String ORDER_ITEM_UNAVAILABLE = "商品已停售或不存在";
+    public static final String ORDER_SUBMIT_PENDING = "上一笔订单正在提交中，请稍后再试";
+    public static final String ORDER_BUSY = "下单人数过多，请稍后再试";
+    public static final String ORDER_REFUND_FAILED = "退款失败";
     public static final String ALREADY_EXISTS = "已存在";
+    public static final String EXPORT_BUSY = "导出任务繁忙，请稍后再试";
+    public static final String EXPORT_JOB_NOT_FOUND = "导出任务不存在";
+    public static final String EXPORT_JOB_NOT_FINISHED = "导出任务尚未完成";
+    public static final String REPORT_DATE_RANGE_INVALID = "开始日期不能晚于结束日期";
+    public static final String REPORT_DATE_RANGE_TOO_LONG = "查询的日期区间过长";
+    public static final String LEADERBOARD_REBUILDING = "销量排行正在重建，请稍后再试";
 
 }
@@ -0,0 +1,30 @@
+package com.sky.context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 当前线程正在执行的定时任务持有的租约状态，由租约切面在任务执行前设置
+ * 分批执行的任务在每批之间检查租约是否丢失，丢失后停止处理剩余批次
+ */
+public class LeaseContext {
+
+    public static ThreadLocal<AtomicBoolean> threadLocal = new ThreadLocal<>();
+
+    public static void setLostFlag(AtomicBoolean lost) {
+        threadLocal.set(lost);
+    }
+
+    /**
+     * 当前线程持有的租约是否已经丢失，不在租约内执行时返回false
+     * @return
+     */
+    public static boolean isLeaseLost() {
+        AtomicBoolean lost = threadLocal.get();
+        return lost != null && lost.get();
+    }
+
+    public static void removeLostFlag() {
+        threadLocal.remove();
+    }
+
+}
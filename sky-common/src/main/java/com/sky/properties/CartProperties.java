@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cart")
+@Data
+public class CartProperties {
+
+    /**
+     * 购物车存储方式：db 保存在shopping_cart表；redis 保存在Redis哈希中，购物车操作不访问数据库
+     */
+    private String store = "db";
+
+    /**
+     * Redis购物车的保留时间（天），每次修改后重新计算
+     */
+    private long ttlDays = 7;
+
+    /**
+     * 是否定期把Redis购物车同步到shopping_cart表，作为数据快照
+     */
+    private boolean snapshotEnabled = false;
+
+    /**
+     * 购物车快照同步间隔（毫秒）
+     */
+    private long snapshotIntervalMillis = 60000;
+
+    /**
+     * 每次同步最多处理的用户数
+     */
+    private int snapshotBatchSize = 200;
+
+}
@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class MenuCacheProperties {
+
+    /**
+     * 每个缓存在本机内存中最多保存的条目数
+     */
+    private long localMaximumSize = 1000;
+
+    /**
+     * 本机内存缓存的过期时间（秒），失效通知丢失时最多读到这么久的旧数据
+     */
+    private long localTtlSeconds = 60;
+
+    /**
+     * Redis缓存的过期时间（分钟）
+     */
+    private long redisTtlMinutes = 1440;
+
+}
@@ -0,0 +1,105 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order")
+@Data
+public class OrderProperties {
+
+    /**
+     * 订单号生成器的节点id（0-1023），多实例部署时每个实例必须不同
+     */
+    private long nodeId = 0;
+
+    /**
+     * 订单号时间戳的起始时间（毫秒），上线后不能修改，默认2024-01-01 00:00:00 UTC
+     */
+    private long numberEpoch = 1704067200000L;
+
+    /**
+     * 每份商品的打包费（分），必须是整元，订单表的打包费字段以元为单位
+     */
+    private long packFeeCents = 100;
+
+    /**
+     * 每单配送费（分）
+     */
+    private long deliveryFeeCents = 600;
+
+    /**
+     * 本机缓存的菜品和套餐快照数量（菜品、套餐分别计算）
+     */
+    private int productCacheSize = 2000;
+
+    /**
+     * 检查其他实例是否修改了菜品、套餐的间隔（毫秒）
+     */
+    private long productCacheVersionPollMillis = 5000;
+
+    /**
+     * 是否启用异步下单流水线，启用后下单请求写入本地日志和队列后立即返回，由后台线程批量写入数据库
+     */
+    private boolean pipelineEnabled = false;
+
+    /**
+     * 异步下单队列容量，队列已满时拒绝下单
+     */
+    private int pipelineQueueCapacity = 10000;
+
+    /**
+     * 后台线程每批最多写入的订单数
+     */
+    private int pipelineBatchSize = 200;
+
+    /**
+     * 异步下单日志文件所在目录，必须是本机持久化磁盘上的目录
+     */
+    private String pipelineJournalDir = System.getProperty("java.io.tmpdir") + "/sky-order-journal";
+
+    /**
+     * 订单写入失败后第一次重试的延迟（毫秒），之后每次翻倍
+     */
+    private long pipelineRetryInitialMillis = 1000;
+
+    /**
+     * 订单写入失败后重试的最长延迟（毫秒）
+     */
+    private long pipelineRetryMaxMillis = 30000;
+
+    /**
+     * 定时任务批量处理超时订单时每批修改的订单数
+     */
+    private int taskChunkSize = 1000;
+
+    /**
+     * 订单支付超时时间（分钟），超时未支付的订单自动取消
+     */
+    private long paymentTimeoutMinutes = 15;
+
+    /**
+     * 检查支付超时订单的间隔（毫秒）
+     */
+    private long paymentTimeoutPollMillis = 1000;
+
+    /**
+     * 本机缓存的已处理支付回调交易号数量
+     */
+    private int payNotifyCacheSize = 10000;
+
+    /**
+     * Redis中支付回调处理记录的保留时间（小时），需要覆盖微信支付的回调重试周期
+     */
+    private long payNotifyTtlHours = 48;
+
+    public void setPackFeeCents(long packFeeCents) {
+        //不是整元的打包费无法保存到订单表，启动时直接报错
+        if (packFeeCents < 0 || packFeeCents % 100 != 0) {
+            throw new IllegalArgumentException("sky.order.pack-fee-cents 必须是100的非负整数倍：" + packFeeCents);
+        }
+        this.packFeeCents = packFeeCents;
+    }
+
+}
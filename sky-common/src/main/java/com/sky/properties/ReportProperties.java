@@ -0,0 +1,87 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    /**
+     * 是否启用每日营业数据汇总表（daily_business_stats），启用后报表和工作台按天读取汇总数据
+     */
+    private boolean rollupEnabled;
+
+    /**
+     * 每晚对账时重新计算的天数（不含当天）
+     */
+    private int rollupReconcileDays = 7;
+
+    /**
+     * 报表一次查询的最大天数（含首尾）
+     */
+    private int maxRangeDays = 366;
+
+    /**
+     * 导出报表的最大天数（含首尾），流式导出和异步导出都受此限制
+     */
+    private int exportMaxRangeDays = 366;
+
+    /**
+     * 流式导出时内存中保留的行数，超出的行写入临时文件
+     */
+    private int exportRowWindow = 100;
+
+    /**
+     * 异步导出文件的存放目录
+     */
+    private String exportDir = System.getProperty("java.io.tmpdir") + "/sky-report";
+
+    /**
+     * 异步导出线程数
+     */
+    private int exportThreads = 2;
+
+    /**
+     * 异步导出等待队列长度，队列满时拒绝新的导出任务
+     */
+    private int exportQueueCapacity = 10;
+
+    /**
+     * 导出文件和任务记录的保留时间（小时）
+     */
+    private int exportArtifactTtlHours = 24;
+
+    /**
+     * 是否启用Redis商品销量排行，启用后销量top10从每天的有序集合中合并查询
+     */
+    private boolean leaderboardEnabled;
+
+    /**
+     * 销量排行数据的保留天数，查询区间超出保留期时仍查询数据库
+     */
+    private int leaderboardRetentionDays = 90;
+
+    /**
+     * 报表统计引擎：db 直接查询数据库，columnar 使用定期加载的内存列式数据
+     */
+    private String engine = "db";
+
+    /**
+     * 内存列式数据加载的天数（含当天），查询区间超出时仍查询数据库
+     */
+    private int columnarDays = 365;
+
+    /**
+     * 内存列式数据重新加载的间隔（毫秒）
+     */
+    private long columnarRefreshMillis = 60000;
+
+    /**
+     * 分时段统计缓存的最大天数，只缓存订单状态不会再变化的日期
+     */
+    private int hourlyCacheDays = 400;
+
+}
@@ -0,0 +1,37 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.workspace")
+@Data
+public class WorkspaceProperties {
+
+    /**
+     * 工作台并行查询的线程数
+     */
+    private int snapshotThreads = 4;
+
+    /**
+     * 工作台并行查询的等待队列长度
+     */
+    private int snapshotQueueCapacity = 100;
+
+    /**
+     * 工作台整体查询的时间预算（毫秒），超时的数据项返回null
+     */
+    private long snapshotTimeoutMillis = 500;
+
+    /**
+     * 工作台数据的缓存时间（毫秒），同一时间窗口内的并发请求共享一次查询结果
+     */
+    private long cacheTtlMillis = 3000;
+
+    /**
+     * 实时营业数据从数据库重新加载的间隔（毫秒），两次加载之间按订单状态变化累加
+     */
+    private long liveReloadMillis = 600000;
+
+}
@@ -0,0 +1,28 @@
+package com.sky.result;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 封装游标分页查询结果
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResult implements Serializable {
+
+    private String nextCursor; //下一页的游标，没有下一页时为null
+
+    private boolean hasMore; //是否还有下一页
+
+    private Long total; //总记录数，未要求统计时为null
+
+    private List records; //当前页数据集合
+
+}
@@ -0,0 +1,74 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法订单号生成器：41位毫秒时间戳 + 10位节点id + 12位毫秒内序号
+ * 每个节点每毫秒可生成4096个订单号，不访问数据库，生成的订单号按时间递增
+ * 时间戳和序号合并保存在一个AtomicLong中，通过CAS无锁更新；
+ * 系统时钟回拨时沿用上一个时间戳继续递增序号，同一毫秒序号用完时等待下一毫秒，保证不重复且时间戳不超前于系统时钟
+ */
+public class SnowflakeOrderNumberGenerator implements OrderNumberGenerator {
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    //起始时间（毫秒）
+    private final long epoch;
+
+    private final long nodeId;
+
+    //高位为上次使用的时间戳，低12位为该时间戳内已使用的序号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeOrderNumberGenerator(long nodeId, long epoch) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点id必须在0到" + MAX_NODE_ID + "之间：" + nodeId);
+        }
+        if (epoch > System.currentTimeMillis()) {
+            throw new IllegalArgumentException("起始时间不能晚于当前时间：" + epoch);
+        }
+        this.nodeId = nodeId;
+        this.epoch = epoch;
+    }
+
+    public String next() {
+        return String.valueOf(nextId());
+    }
+
+    /**
+     * 生成下一个id
+     *
+     * @return
+     */
+    public long nextId() {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+
+            long next;
+            if (now > lastTimestamp) {
+                //进入新的毫秒，序号从0开始
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                //同一毫秒或时钟回拨，序号加一
+                next = last + 1;
+            } else {
+                //序号用完，等待进入下一毫秒
+                Thread.yield();
+                continue;
+            }
+
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return ((timestamp - epoch) << (NODE_BITS + SEQUENCE_BITS))
+                        | (nodeId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
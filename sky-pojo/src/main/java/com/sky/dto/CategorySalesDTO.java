@@ -0,0 +1,31 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 按分类统计的销量
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CategorySalesDTO implements Serializable {
+
+    //分类id
+    private Long categoryId;
+
+    //分类名称
+    private String categoryName;
+
+    //销量
+    private Integer number;
+
+    //销售额
+    private BigDecimal amount;
+}
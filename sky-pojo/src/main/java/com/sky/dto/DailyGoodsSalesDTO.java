@@ -0,0 +1,44 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * 按下单日期和商品分组的销量
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyGoodsSalesDTO implements Serializable {
+
+    //下单日期
+    private LocalDate statDate;
+
+    //菜品id，套餐明细时为null
+    private Long dishId;
+
+    //套餐id，菜品明细时为null
+    private Long setmealId;
+
+    //商品名称
+    private String name;
+
+    //商品所属分类id
+    private Long categoryId;
+
+    //分类名称
+    private String categoryName;
+
+    //销量
+    private Integer number;
+
+    //销售额
+    private BigDecimal amount;
+}
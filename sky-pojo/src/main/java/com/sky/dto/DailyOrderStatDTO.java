@@ -0,0 +1,33 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天分组的订单统计结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyOrderStatDTO implements Serializable {
+    //统计日期
+    private LocalDate statDate;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数（已完成）
+    private Integer validOrderCount;
+
+    //已取消订单数
+    private Integer cancelledCount;
+
+    //营业额（已完成订单金额）
+    private Double turnover;
+}
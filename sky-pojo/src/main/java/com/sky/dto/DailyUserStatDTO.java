@@ -0,0 +1,24 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天分组的新增用户统计结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyUserStatDTO implements Serializable {
+    //统计日期
+    private LocalDate statDate;
+
+    //新增用户数
+    private Integer newUsers;
+}
@@ -0,0 +1,34 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按下单日期和小时分组的订单统计
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class HourlyOrderStatDTO implements Serializable {
+
+    //下单日期
+    private LocalDate statDate;
+
+    //下单小时，0-23
+    private Integer statHour;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数
+    private Integer validOrderCount;
+
+    //营业额
+    private Double turnover;
+}
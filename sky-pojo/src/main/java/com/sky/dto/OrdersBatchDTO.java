@@ -0,0 +1,14 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+public class OrdersBatchDTO implements Serializable {
+
+    //订单id列表
+    private List<Long> ids;
+
+}
@@ -0,0 +1,29 @@
+package com.sky.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * 订单游标分页查询条件，按下单时间和id倒序，从游标位置之后继续查询
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class OrdersCursorQueryDTO extends OrdersPageQueryDTO {
+
+    //上一页返回的游标，查询第一页时为空
+    private String cursor;
+
+    //是否统计总记录数
+    private boolean withTotal;
+
+    //由游标解析得到的上一页最后一条订单的下单时间和id
+    private LocalDateTime cursorTime;
+
+    private Long cursorId;
+
+    //本次查询的条数
+    private Integer limit;
+
+}
@@ -0,0 +1,17 @@
+package com.sky.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+public class ShoppingCartBatchDTO implements Serializable {
+
+    //客户端批次版本号，每次提交递增；版本号不大于已处理版本的批次视为重复提交，不再修改购物车
+    private Long version;
+
+    //本批次的数量变化
+    private List<ShoppingCartDeltaDTO> items;
+
+}
@@ -0,0 +1,16 @@
+package com.sky.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 购物车中一个商品的数量变化
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class ShoppingCartDeltaDTO extends ShoppingCartDTO {
+
+    //数量变化，正数为增加，负数为减少
+    private Integer delta;
+
+}
@@ -0,0 +1,43 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBusinessStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //营业日期（按下单日期/注册日期归属）
+    private LocalDate bizDate;
+
+    //订单总数
+    private Integer totalOrders;
+
+    //已完成订单数
+    private Integer completedOrders;
+
+    //已取消订单数
+    private Integer cancelledOrders;
+
+    //营业额（已完成订单金额）
+    private BigDecimal turnover;
+
+    //新增用户数
+    private Integer newUsers;
+
+    private LocalDateTime updateTime;
+}
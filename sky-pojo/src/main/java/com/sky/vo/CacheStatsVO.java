@@ -0,0 +1,31 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 缓存命中统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsVO implements Serializable {
+
+    //命中次数
+    private Long hits;
+
+    //未命中（执行加载）次数
+    private Long misses;
+
+    //合并到正在进行的加载中的次数
+    private Long coalesced;
+
+    //当前缓存的key数量
+    private Integer size;
+
+}
@@ -0,0 +1,25 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategorySalesReportVO implements Serializable {
+
+    //分类名称列表，以逗号分隔，例如：川菜,湘菜,主食
+    private String nameList;
+
+    //销量列表，以逗号分隔，例如：260,215,200
+    private String numberList;
+
+    //销售额列表，以逗号分隔，例如：5200.0,4300.0,600.0
+    private String amountList;
+
+}
@@ -0,0 +1,32 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapReportVO implements Serializable {
+
+    //星期，以逗号分隔：星期一,星期二,...,星期日
+    private String weekdayList;
+
+    //小时，以逗号分隔，例如：0,1,2,...,23
+    private String hourList;
+
+    //区间内每个星期几出现的天数，以逗号分隔，用于计算日均值，例如：5,5,4,4,4,4,4
+    private String dayCountList;
+
+    //订单数，第一维为星期一到星期日，第二维为0-23时
+    private List<List<Integer>> orderCountMatrix;
+
+    //营业额，第一维为星期一到星期日，第二维为0-23时
+    private List<List<Double>> turnoverMatrix;
+
+}
@@ -0,0 +1,28 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HourlyReportVO implements Serializable {
+
+    //小时，以逗号分隔，例如：0,1,2,...,23
+    private String hourList;
+
+    //每小时订单数，以逗号分隔，例如：0,0,...,26,31
+    private String orderCountList;
+
+    //每小时有效订单数，以逗号分隔，例如：0,0,...,20,28
+    private String validOrderCountList;
+
+    //每小时营业额，以逗号分隔，例如：0.0,0.0,...,1406.0,1820.0
+    private String turnoverList;
+
+}
@@ -0,0 +1,29 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 实时推送的今日营业数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveMetricsVO implements Serializable {
+
+    //今日营业数据
+    private BusinessDataVO businessData;
+
+    //今日订单管理数据
+    private OrderOverViewVO orderOverView;
+
+    //数据时间
+    private LocalDateTime time;
+
+}
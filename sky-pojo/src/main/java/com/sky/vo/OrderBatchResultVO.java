@@ -0,0 +1,26 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量修改订单状态的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBatchResultVO implements Serializable {
+
+    //修改成功的订单id
+    private List<Long> successIds;
+
+    //不存在或当前状态不允许修改的订单id
+    private List<Long> failedIds;
+
+}
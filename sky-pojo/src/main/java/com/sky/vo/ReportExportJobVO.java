@@ -0,0 +1,44 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 异步导出任务
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportExportJobVO implements Serializable {
+
+    //任务id
+    private String jobId;
+
+    //导出开始日期
+    private LocalDate begin;
+
+    //导出结束日期
+    private LocalDate end;
+
+    //是否包含订单明细
+    private Boolean detail;
+
+    //任务状态 WAITING RUNNING FINISHED FAILED
+    private String status;
+
+    //进度，0-100
+    private Integer progress;
+
+    //是否直接使用了已缓存的导出文件
+    private Boolean cached;
+
+    //失败原因
+    private String message;
+
+}
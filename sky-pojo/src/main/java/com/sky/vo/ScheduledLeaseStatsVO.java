@@ -0,0 +1,37 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 定时任务租约统计（当前实例）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduledLeaseStatsVO implements Serializable {
+
+    //租约名称
+    private String name;
+
+    //获取租约并执行的次数
+    private Long acquired;
+
+    //租约被其他实例持有而跳过的次数
+    private Long skipped;
+
+    //执行期间续期失败（租约丢失）的次数
+    private Long lost;
+
+    //最近一次获取租约的序号，用于排查租约交接
+    private Long lastToken;
+
+    //最近一次执行耗时（毫秒）
+    private Long lastDurationMillis;
+
+}
@@ -0,0 +1,30 @@
+package com.sky.vo;
+
+import com.sky.entity.ShoppingCart;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量修改购物车的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShoppingCartBatchVO implements Serializable {
+
+    //已处理的客户端批次版本号
+    private Long version;
+
+    //本批次是否为重复提交
+    private Boolean duplicate;
+
+    //修改后的购物车
+    private List<ShoppingCart> items;
+
+}
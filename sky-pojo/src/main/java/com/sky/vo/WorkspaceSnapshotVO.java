@@ -0,0 +1,35 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 工作台全部数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkspaceSnapshotVO implements Serializable {
+
+    //今日营业数据
+    private BusinessDataVO businessData;
+
+    //订单管理数据
+    private OrderOverViewVO orderOverView;
+
+    //菜品总览
+    private DishOverViewVO dishOverView;
+
+    //套餐总览
+    private SetmealOverViewVO setmealOverView;
+
+    //超时或失败而未返回的数据项
+    private List<String> missing;
+
+}
@@ -0,0 +1,373 @@
+package com.sky.analytics;
+
+import com.sky.dto.CategorySalesDTO;
+import com.sky.dto.DailyGoodsSalesDTO;
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 内存列式分析数据
+ * 定期把最近一段时间的订单和已完成订单的商品销量加载到基本类型数组中，报表查询改为在内存中顺序扫描，不再访问数据库
+ * 每次加载生成新的不可变快照后整体替换，查询总是读到同一时刻的完整数据；加载间隔内新产生的订单在下次加载后可见
+ */
+@Component
+@Slf4j
+public class ColumnarOrderStore {
+
+    public static final String ENGINE = "columnar";
+
+    private static final byte STATUS_COMPLETED = Orders.COMPLETED.byteValue();
+    private static final byte STATUS_CANCELLED = Orders.CANCELLED.byteValue();
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 定期重新加载，只在报表引擎为columnar时执行
+     */
+    @Scheduled(fixedDelayString = "${sky.report.columnar-refresh-millis:60000}")
+    public void refresh() {
+        if (!ENGINE.equals(reportProperties.getEngine())) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            snapshot = load(LocalDate.now().minusDays(reportProperties.getColumnarDays() - 1));
+            log.info("内存分析数据加载完成，订单{}条，商品销量{}条，耗时{}ms",
+                    snapshot.orderSize, snapshot.salesSize, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            //加载失败时继续使用上一次的快照
+            log.error("内存分析数据加载失败", e);
+        }
+    }
+
+    /**
+     * 是否已加载且包含从begin开始的数据
+     * @param begin
+     * @return
+     */
+    public boolean covers(LocalDate begin) {
+        Snapshot current = snapshot;
+        return current != null && begin.toEpochDay() >= current.fromDay;
+    }
+
+    /**
+     * 统计区间内每天的订单总数、有效订单数、取消订单数和营业额，没有订单的日期不在结果中；结束日期早于开始日期时返回空结果
+     * @param begin
+     * @param end
+     * @return
+     */
+    public Map<LocalDate, DailyOrderStatDTO> dailyOrderStats(LocalDate begin, LocalDate end) {
+        if (end.isBefore(begin)) {
+            return new HashMap<>();
+        }
+        Snapshot current = snapshot;
+        int beginDay = (int) begin.toEpochDay();
+        int days = (int) (end.toEpochDay() - beginDay + 1);
+
+        int[] orderCounts = new int[days];
+        int[] validCounts = new int[days];
+        int[] cancelledCounts = new int[days];
+        long[] turnovers = new long[days];
+
+        //订单按下单时间排序，二分定位区间后顺序扫描
+        int from = lowerBound(current.orderDay, current.orderSize, beginDay);
+        int to = lowerBound(current.orderDay, current.orderSize, beginDay + days);
+        int[] orderDay = current.orderDay;
+        byte[] status = current.orderStatus;
+        long[] amount = current.orderAmount;
+        for (int i = from; i < to; i++) {
+            int d = orderDay[i] - beginDay;
+            orderCounts[d]++;
+            if (status[i] == STATUS_COMPLETED) {
+                validCounts[d]++;
+                turnovers[d] += amount[i];
+            } else if (status[i] == STATUS_CANCELLED) {
+                cancelledCounts[d]++;
+            }
+        }
+
+        Map<LocalDate, DailyOrderStatDTO> statMap = new HashMap<>();
+        for (int d = 0; d < days; d++) {
+            if (orderCounts[d] == 0) {
+                continue;
+            }
+            LocalDate date = LocalDate.ofEpochDay(beginDay + d);
+            statMap.put(date, DailyOrderStatDTO.builder()
+                    .statDate(date)
+                    .orderCount(orderCounts[d])
+                    .validOrderCount(validCounts[d])
+                    .cancelledCount(cancelledCounts[d])
+                    .turnover(turnovers[d] / 100.0)
+                    .build());
+        }
+        return statMap;
+    }
+
+    /**
+     * 查询区间内销量排名前n的商品
+     * @param begin
+     * @param end
+     * @param n
+     * @return
+     */
+    public List<GoodsSalesDTO> salesTop(LocalDate begin, LocalDate end, int n) {
+        Snapshot current = snapshot;
+        int from = lowerBound(current.salesDay, current.salesSize, (int) begin.toEpochDay());
+        int to = lowerBound(current.salesDay, current.salesSize, (int) end.toEpochDay() + 1);
+
+        //商品编号在加载时已压缩为连续的下标，直接按下标累加
+        long[] numbers = new long[current.goodsNames.length];
+        int[] goods = current.salesGoods;
+        int[] salesNumber = current.salesNumber;
+        for (int i = from; i < to; i++) {
+            numbers[goods[i]] += salesNumber[i];
+        }
+
+        List<GoodsSalesDTO> salesTop = new ArrayList<>();
+        Integer[] order = sortDesc(numbers);
+        for (int i = 0; i < order.length && salesTop.size() < n && numbers[order[i]] > 0; i++) {
+            salesTop.add(new GoodsSalesDTO(current.goodsNames[order[i]], (int) numbers[order[i]]));
+        }
+        return salesTop;
+    }
+
+    /**
+     * 按商品分类统计区间内的销量和销售额，按销量从高到低排列
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<CategorySalesDTO> categorySales(LocalDate begin, LocalDate end) {
+        Snapshot current = snapshot;
+        int from = lowerBound(current.salesDay, current.salesSize, (int) begin.toEpochDay());
+        int to = lowerBound(current.salesDay, current.salesSize, (int) end.toEpochDay() + 1);
+
+        long[] numbers = new long[current.categoryIds.length];
+        long[] amounts = new long[current.categoryIds.length];
+        int[] category = current.salesCategory;
+        int[] salesNumber = current.salesNumber;
+        long[] salesAmount = current.salesAmount;
+        for (int i = from; i < to; i++) {
+            int c = category[i];
+            if (c >= 0) {
+                numbers[c] += salesNumber[i];
+                amounts[c] += salesAmount[i];
+            }
+        }
+
+        List<CategorySalesDTO> categorySales = new ArrayList<>();
+        for (Integer c : sortDesc(numbers)) {
+            if (numbers[c] == 0) {
+                break;
+            }
+            categorySales.add(CategorySalesDTO.builder()
+                    .categoryId(current.categoryIds[c])
+                    .categoryName(current.categoryNames[c])
+                    .number((int) numbers[c])
+                    .amount(BigDecimal.valueOf(amounts[c], 2))
+                    .build());
+        }
+        return categorySales;
+    }
+
+    /**
+     * 从数据库加载fromDate及以后的数据
+     * @param fromDate
+     * @return
+     */
+    private Snapshot load(LocalDate fromDate) {
+        LocalDateTime beginTime = LocalDateTime.of(fromDate, LocalTime.MIN);
+        Snapshot loading = new Snapshot((int) fromDate.toEpochDay());
+
+        //订单逐行流式读取，直接写入数组
+        IntColumn orderDay = new IntColumn();
+        LongColumn orderAmount = new LongColumn();
+        ByteColumn orderStatus = new ByteColumn();
+        orderMapper.streamColumnsSince(beginTime, context -> {
+            Orders orders = context.getResultObject();
+            orderDay.add((int) orders.getOrderTime().toLocalDate().toEpochDay());
+            orderAmount.add(toCents(orders.getAmount()));
+            orderStatus.add(orders.getStatus().byteValue());
+        });
+        loading.orderSize = orderDay.size;
+        loading.orderDay = orderDay.values;
+        loading.orderAmount = orderAmount.values;
+        loading.orderStatus = orderStatus.values;
+
+        //商品销量已在数据库中按天和商品汇总
+        Map map = new HashMap();
+        map.put("beginTime", beginTime);
+        List<DailyGoodsSalesDTO> salesList = orderMapper.sumGoodsSalesGroupByDate(map);
+
+        Map<String, Integer> goodsIndex = new HashMap<>();
+        List<String> goodsNames = new ArrayList<>();
+        Map<Long, Integer> categoryIndex = new HashMap<>();
+        List<Long> categoryIds = new ArrayList<>();
+        List<String> categoryNames = new ArrayList<>();
+
+        int size = salesList.size();
+        loading.salesSize = size;
+        loading.salesDay = new int[size];
+        loading.salesGoods = new int[size];
+        loading.salesCategory = new int[size];
+        loading.salesNumber = new int[size];
+        loading.salesAmount = new long[size];
+        for (int i = 0; i < size; i++) {
+            DailyGoodsSalesDTO sales = salesList.get(i);
+            String goodsKey = sales.getDishId() != null ? "d:" + sales.getDishId() : "s:" + sales.getSetmealId();
+            Integer goods = goodsIndex.get(goodsKey);
+            if (goods == null) {
+                goods = goodsNames.size();
+                goodsIndex.put(goodsKey, goods);
+                goodsNames.add(sales.getName());
+            }
+
+            int category = -1;
+            if (sales.getCategoryId() != null) {
+                Integer index = categoryIndex.get(sales.getCategoryId());
+                if (index == null) {
+                    index = categoryIds.size();
+                    categoryIndex.put(sales.getCategoryId(), index);
+                    categoryIds.add(sales.getCategoryId());
+                    categoryNames.add(sales.getCategoryName());
+                }
+                category = index;
+            }
+
+            loading.salesDay[i] = (int) sales.getStatDate().toEpochDay();
+            loading.salesGoods[i] = goods;
+            loading.salesCategory[i] = category;
+            loading.salesNumber[i] = sales.getNumber();
+            loading.salesAmount[i] = toCents(sales.getAmount());
+        }
+
+        loading.goodsNames = goodsNames.toArray(new String[0]);
+        loading.categoryIds = categoryIds.stream().mapToLong(Long::longValue).toArray();
+        loading.categoryNames = categoryNames.toArray(new String[0]);
+        return loading;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * 有序数组中第一个不小于key的位置
+     */
+    private static int lowerBound(int[] values, int size, int key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 按值从大到小排列的下标
+     */
+    private static Integer[] sortDesc(long[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(values[b], values[a]));
+        return order;
+    }
+
+    /**
+     * 一次加载得到的全部列，加载完成后不再修改
+     */
+    private static class Snapshot {
+        private final int fromDay;
+
+        //订单列，按下单时间排序
+        private int orderSize;
+        private int[] orderDay;
+        private long[] orderAmount;
+        private byte[] orderStatus;
+
+        //每天每个商品的销量列，按日期排序
+        private int salesSize;
+        private int[] salesDay;
+        private int[] salesGoods;
+        private int[] salesCategory;
+        private int[] salesNumber;
+        private long[] salesAmount;
+
+        //商品和分类的下标字典
+        private String[] goodsNames;
+        private long[] categoryIds;
+        private String[] categoryNames;
+
+        private Snapshot(int fromDay) {
+            this.fromDay = fromDay;
+        }
+    }
+
+    private static class IntColumn {
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class LongColumn {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class ByteColumn {
+        private byte[] values = new byte[1024];
+        private int size;
+
+        void add(byte value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
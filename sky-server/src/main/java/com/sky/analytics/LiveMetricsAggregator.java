@@ -0,0 +1,268 @@
+package com.sky.analytics;
+
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangeEvent;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.vo.BusinessDataVO;
+import com.sky.vo.LiveMetricsVO;
+import com.sky.vo.OrderOverViewVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 今日营业数据的内存计数器
+ * 从数据库加载当天的初始值后，由订单状态变化事件和新用户注册累加增量，推送实时数据时不再查询数据库
+ * 状态变化只统计今天下单的订单；其他实例上的状态变化等无法通过增量反映的部分，由定期重新加载修正
+ */
+@Component
+@Slf4j
+public class LiveMetricsAggregator {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private volatile Counters counters = new Counters(LocalDate.now());
+
+    //正在重新加载的计数器，加载期间的增量同时累加到这里
+    private volatile Counters reloading;
+
+    //累加增量时持有读锁，开始加载和替换计数器时持有写锁
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    //计数器在上次推送后是否发生变化
+    private final AtomicBoolean changed = new AtomicBoolean(true);
+
+    /**
+     * 订单状态变化时累加增量，在订单事务提交后执行
+     * 只统计今天下单的订单，修改以前的订单（例如完成昨天的订单）不影响今日数据
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChange(OrderStatusChangeEvent event) {
+        if (event.getOrderIds() == null || event.getOrderIds().isEmpty()) {
+            return;
+        }
+
+        //新订单一定是今天下单的，状态变化需要按下单时间过滤，金额使用过滤后订单的金额
+        int count;
+        BigDecimal amount;
+        if (event.getFromStatus() == null) {
+            count = event.getOrderIds().size();
+            amount = event.getAmount();
+        } else {
+            LocalDateTime todayBegin = LocalDateTime.of(counters.date, LocalTime.MIN);
+            List<Orders> todayOrders;
+            try {
+                todayOrders = orderMapper.getIdAndAmountByIdsAndOrderTimeGE(event.getOrderIds(), todayBegin);
+            } catch (Exception e) {
+                //查询失败时跳过本次增量，由定期重新加载修正
+                log.error("查询订单下单时间失败，跳过实时数据增量：{}", event, e);
+                return;
+            }
+            if (todayOrders.isEmpty()) {
+                return;
+            }
+            count = todayOrders.size();
+            amount = BigDecimal.ZERO;
+            for (Orders orders : todayOrders) {
+                if (orders.getAmount() != null) {
+                    amount = amount.add(orders.getAmount());
+                }
+            }
+        }
+
+        //完成时累加营业额，已完成订单被取消时扣回
+        long turnoverCents = 0;
+        if (amount != null) {
+            if (Orders.COMPLETED.equals(event.getToStatus())) {
+                turnoverCents = toCents(amount);
+            } else if (Orders.COMPLETED.equals(event.getFromStatus())) {
+                turnoverCents = -toCents(amount);
+            }
+        }
+        apply(c -> {
+            if (event.getFromStatus() == null) {
+                c.allOrders.add(count);
+            } else {
+                c.statusCount(event.getFromStatus()).add(-count);
+            }
+            c.statusCount(event.getToStatus()).add(count);
+            c.turnoverCents.add(turnoverCents);
+        });
+    }
+
+    /**
+     * 新用户注册时累加今日新增用户数
+     */
+    public void increaseNewUsers() {
+        apply(c -> c.newUsers.increment());
+    }
+
+    /**
+     * 从数据库重新加载今日数据
+     * 加载期间到达的增量同时累加到新计数器，替换后不会丢失
+     */
+    public void reload() {
+        LocalDate today = LocalDate.now();
+        Counters loading = new Counters(today);
+        swapLock.writeLock().lock();
+        try {
+            reloading = loading;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        boolean loaded = false;
+        try {
+            Map map = new HashMap();
+            map.put("beginTime", LocalDateTime.of(today, LocalTime.MIN));
+            map.put("endTime", LocalDateTime.of(today, LocalTime.MAX));
+
+            DailyOrderStatDTO orderStat = orderMapper.sumStatByMap(map);
+            OrderOverViewVO overView = orderMapper.countOverViewByMap(map);
+            Integer newUsers = userMapper.countByMap(map);
+
+            loading.allOrders.add(overView.getAllOrders());
+            loading.statusCount(Orders.TO_BE_CONFIRMED).add(overView.getWaitingOrders());
+            loading.statusCount(Orders.CONFIRMED).add(overView.getDeliveredOrders());
+            loading.statusCount(Orders.COMPLETED).add(overView.getCompletedOrders());
+            loading.statusCount(Orders.CANCELLED).add(overView.getCancelledOrders());
+            loading.turnoverCents.add(toCents(orderStat.getTurnover() == null ? BigDecimal.ZERO : BigDecimal.valueOf(orderStat.getTurnover())));
+            loading.newUsers.add(newUsers == null ? 0 : newUsers);
+            loaded = true;
+        } finally {
+            //替换计数器和停止记录增量在同一个写锁内完成
+            swapLock.writeLock().lock();
+            try {
+                if (loaded) {
+                    counters = loading;
+                }
+                if (reloading == loading) {
+                    reloading = null;
+                }
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+        }
+        changed.set(true);
+        log.info("今日实时营业数据已重新加载：{}", today);
+    }
+
+    /**
+     * 计数器在上次调用后是否发生变化，跨天时先重新加载
+     * @return
+     */
+    public boolean takeChanged() {
+        if (!counters.date.equals(LocalDate.now())) {
+            reload();
+        }
+        return changed.getAndSet(false);
+    }
+
+    /**
+     * 当前计数器的快照
+     * @return
+     */
+    public LiveMetricsVO snapshot() {
+        Counters current = counters;
+        int allOrders = current.allOrders.intValue();
+        int validOrderCount = current.statusCount(Orders.COMPLETED).intValue();
+        double turnover = current.turnoverCents.sum() / 100.0;
+
+        Double orderCompletionRate = 0.0;
+        Double unitPrice = 0.0;
+        if (allOrders != 0 && validOrderCount != 0) {
+            orderCompletionRate = (double) validOrderCount / allOrders;
+            unitPrice = turnover / validOrderCount;
+        }
+
+        BusinessDataVO businessData = BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(current.newUsers.intValue())
+                .build();
+
+        OrderOverViewVO orderOverView = OrderOverViewVO.builder()
+                .waitingOrders(current.statusCount(Orders.TO_BE_CONFIRMED).intValue())
+                .deliveredOrders(current.statusCount(Orders.CONFIRMED).intValue())
+                .completedOrders(validOrderCount)
+                .cancelledOrders(current.statusCount(Orders.CANCELLED).intValue())
+                .allOrders(allOrders)
+                .build();
+
+        return LiveMetricsVO.builder()
+                .businessData(businessData)
+                .orderOverView(orderOverView)
+                .time(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 把增量累加到当前计数器，正在重新加载时同时累加到新计数器
+     * @param delta
+     */
+    private void apply(Consumer<Counters> delta) {
+        swapLock.readLock().lock();
+        try {
+            delta.accept(counters);
+            Counters pending = reloading;
+            if (pending != null && pending != counters) {
+                delta.accept(pending);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        changed.set(true);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * 一天的计数器，重新加载时整体替换
+     */
+    private static class Counters {
+        private final LocalDate date;
+        private final LongAdder allOrders = new LongAdder();
+        private final LongAdder turnoverCents = new LongAdder();
+        private final LongAdder newUsers = new LongAdder();
+
+        //下标为订单状态，0不使用
+        private final LongAdder[] statusCounts = new LongAdder[Orders.CANCELLED + 1];
+
+        private Counters(LocalDate date) {
+            this.date = date;
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i] = new LongAdder();
+            }
+        }
+
+        private LongAdder statusCount(Integer status) {
+            return statusCounts[status];
+        }
+    }
+}
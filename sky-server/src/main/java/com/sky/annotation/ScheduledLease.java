@@ -0,0 +1,24 @@
+package com.sky.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 自定义注解，用于表示定时任务在集群中同一时间只能由一个实例执行
+ * 执行前通过Redis获取租约，获取失败的实例跳过本次执行
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ScheduledLease {
+    //租约名称，集群内唯一
+    String value();
+
+    //租约时长（毫秒），任务执行期间每隔三分之一时长自动续期
+    long leaseMillis() default 60000;
+
+    //任务结束后租约至少保留到获取后的这段时间（毫秒），cron任务设置为大于各实例触发时间偏差的值，
+    //避免触发稍晚的实例在租约释放后再执行一次同一周期的任务
+    long minHoldMillis() default 0;
+}
@@ -0,0 +1,199 @@
+package com.sky.aspect;
+
+import com.sky.annotation.ScheduledLease;
+import com.sky.context.LeaseContext;
+import com.sky.vo.ScheduledLeaseStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 定时任务租约切面：集群中同一租约同一时间只有一个实例执行
+ * 租约为Redis键 lease:{name}，值为 实例id:序号，通过 SET NX PX 获取，执行期间定期续期，执行结束后只释放自己持有的租约；
+ * 设置了 minHoldMillis 时，释放改为把租约过期时间缩短到获取后 minHoldMillis 为止，同一周期触发稍晚的实例仍然获取不到租约。
+ * 序号由 lease:{name}:token 自增生成，只用于区分不同次获取的租约，租约过期后被其他实例获取时旧持有者无法再续期或释放；
+ * 序号不会传给任务，任务中的写操作需要自身保证幂等（例如按原状态条件更新）。
+ * 续期发现租约已丢失（或连续续期失败超过租约时长）时，通过 LeaseContext 通知任务，分批执行的任务在批次之间停止
+ */
+@Aspect
+@Component
+@Slf4j
+public class ScheduledLeaseAspect {
+
+    private static final String KEY_PREFIX = "lease:";
+
+    //获取租约成功时返回新的租约序号，失败返回0
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then return 0 end "
+                    + "local token = redis.call('incr', KEYS[2]) "
+                    + "redis.call('set', KEYS[1], ARGV[1] .. ':' .. token, 'PX', ARGV[2]) "
+                    + "return token", Long.class);
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end "
+                    + "return 0", Long.class);
+
+    //ARGV[2]大于0时租约保留ARGV[2]毫秒后过期，否则直接删除
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) ~= ARGV[1] then return 0 end "
+                    + "if tonumber(ARGV[2]) > 0 then return redis.call('pexpire', KEYS[1], ARGV[2]) end "
+                    + "return redis.call('del', KEYS[1])", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final String instanceId = createInstanceId();
+
+    private final ScheduledExecutorService renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "scheduled-lease-renew");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Stats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 切入点
+     */
+    @Pointcut("@annotation(com.sky.annotation.ScheduledLease)")
+    public void scheduledLeasePointCut(){
+
+    }
+
+    /**
+     * 获取租约后执行任务，获取失败时跳过本次执行
+     */
+    @Around("scheduledLeasePointCut()")
+    public Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        ScheduledLease lease = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(ScheduledLease.class);
+        //租约键和序号键使用相同的hash tag，保证Redis集群下位于同一slot
+        String key = KEY_PREFIX + "{" + lease.value() + "}";
+        String leaseMillis = String.valueOf(lease.leaseMillis());
+        Stats stats = statsMap.computeIfAbsent(lease.value(), k -> new Stats());
+
+        Long sequence;
+        try {
+            sequence = stringRedisTemplate.execute(ACQUIRE_SCRIPT, Arrays.asList(key, key + ":token"), instanceId, leaseMillis);
+        } catch (Exception e) {
+            //无法确认其他实例是否在执行，跳过本次执行
+            log.error("获取定时任务租约失败，跳过本次执行：{}", lease.value(), e);
+            stats.skipped.incrementAndGet();
+            return null;
+        }
+        if (sequence == null || sequence == 0) {
+            stats.skipped.incrementAndGet();
+            return null;
+        }
+
+        String value = instanceId + ":" + sequence;
+        stats.acquired.incrementAndGet();
+        stats.lastToken.set(sequence);
+
+        AtomicBoolean lost = new AtomicBoolean();
+        AtomicLong renewedAt = new AtomicLong(System.currentTimeMillis());
+        long period = Math.max(lease.leaseMillis() / 3, 1);
+        ScheduledFuture<?> renewal = renewExecutor.scheduleAtFixedRate(() -> {
+            Long renewed;
+            try {
+                renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key), value, leaseMillis);
+            } catch (Exception e) {
+                log.error("定时任务租约续期失败：{}", lease.value(), e);
+                //超过租约时长没有续期成功，租约可能已经过期
+                if (System.currentTimeMillis() - renewedAt.get() < lease.leaseMillis()) {
+                    return;
+                }
+                renewed = 0L;
+            }
+            if (renewed == null || renewed == 0) {
+                lost.set(true);
+                stats.lost.incrementAndGet();
+                log.warn("定时任务租约已丢失，其他实例可能已开始执行：{}，序号：{}", lease.value(), sequence);
+                //抛出异常后不再续期
+                throw new IllegalStateException("lease lost: " + lease.value());
+            }
+            renewedAt.set(System.currentTimeMillis());
+        }, period, period, TimeUnit.MILLISECONDS);
+
+        long start = System.currentTimeMillis();
+        LeaseContext.setLostFlag(lost);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            LeaseContext.removeLostFlag();
+            renewal.cancel(false);
+            long elapsed = System.currentTimeMillis() - start;
+            stats.lastDurationMillis.set(elapsed);
+            long holdMillis = lease.minHoldMillis() - elapsed;
+            try {
+                stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), value,
+                        String.valueOf(Math.max(holdMillis, 0)));
+            } catch (Exception e) {
+                //释放失败时等待租约自动过期
+                log.error("释放定时任务租约失败：{}", lease.value(), e);
+            }
+        }
+    }
+
+    /**
+     * 查询当前实例的租约统计
+     * @return
+     */
+    public List<ScheduledLeaseStatsVO> getStats() {
+        List<ScheduledLeaseStatsVO> list = new ArrayList<>();
+        statsMap.forEach((name, stats) -> list.add(ScheduledLeaseStatsVO.builder()
+                .name(name)
+                .acquired(stats.acquired.get())
+                .skipped(stats.skipped.get())
+                .lost(stats.lost.get())
+                .lastToken(stats.lastToken.get())
+                .lastDurationMillis(stats.lastDurationMillis.get())
+                .build()));
+        return list;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        renewExecutor.shutdownNow();
+    }
+
+    private static String createInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static class Stats {
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong lost = new AtomicLong();
+        private final AtomicLong lastToken = new AtomicLong();
+        private final AtomicLong lastDurationMillis = new AtomicLong();
+    }
+}
@@ -0,0 +1,54 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 菜品或套餐的只读快照，只保留购物车和下单需要的字段，创建后不再修改
+ * 购物车和下单都从 ProductSnapshotCache 读取同一份快照，单价一致
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ProductSnapshot {
+
+    private final Long id;
+
+    private final String name;
+
+    private final String image;
+
+    //单价（分）
+    private final long priceCents;
+
+    //状态 0:停售 1:起售
+    private final Integer status;
+
+    public BigDecimal getPrice() {
+        return BigDecimal.valueOf(priceCents, 2);
+    }
+
+    static ProductSnapshot of(Dish dish) {
+        return new ProductSnapshot(dish.getId(), dish.getName(), dish.getImage(), toCents(dish.getPrice()), dish.getStatus());
+    }
+
+    static ProductSnapshot of(Setmeal setmeal) {
+        return new ProductSnapshot(setmeal.getId(), setmeal.getName(), setmeal.getImage(), toCents(setmeal.getPrice()),
+                setmeal.getStatus());
+    }
+
+    /**
+     * 元转换为分，四舍五入
+     * @param price
+     * @return
+     */
+    public static long toCents(BigDecimal price) {
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+}
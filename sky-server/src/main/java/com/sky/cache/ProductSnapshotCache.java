@@ -0,0 +1,157 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.event.MenuChangeEvent;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 菜品和套餐快照的本机缓存，按id读穿加载，最多保存 productCacheSize 个，超出时淘汰最久未使用的
+ * 缓存项记录加载时的版本号，菜品或套餐修改后版本号加1，旧版本的缓存项在下次读取时重新加载。
+ * 版本号同时写入Redis键 menu:version，其他实例定期比较该值，发现变化时同样使本机缓存失效
+ */
+@Component
+@Slf4j
+public class ProductSnapshotCache {
+
+    private static final String VERSION_KEY = "menu:version";
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    //本机缓存版本号
+    private final AtomicLong version = new AtomicLong();
+
+    //最近一次看到的Redis版本号
+    private volatile String remoteVersion;
+
+    private final Map<Long, Entry> dishes = createLruMap();
+
+    private final Map<Long, Entry> setmeals = createLruMap();
+
+    /**
+     * 查询菜品快照
+     * @param id
+     * @return 菜品不存在时返回null
+     */
+    public ProductSnapshot getDish(Long id) {
+        return get(dishes, id, key -> {
+            Dish dish = dishMapper.getById(key);
+            return dish == null ? null : ProductSnapshot.of(dish);
+        });
+    }
+
+    /**
+     * 查询套餐快照
+     * @param id
+     * @return 套餐不存在时返回null
+     */
+    public ProductSnapshot getSetmeal(Long id) {
+        return get(setmeals, id, key -> {
+            Setmeal setmeal = setmealMapper.getById(key);
+            return setmeal == null ? null : ProductSnapshot.of(setmeal);
+        });
+    }
+
+    /**
+     * 查询商品快照，菜品id和套餐id传其一
+     * @param dishId
+     * @param setmealId
+     * @return 商品不存在时返回null
+     */
+    public ProductSnapshot get(Long dishId, Long setmealId) {
+        return dishId != null ? getDish(dishId) : getSetmeal(setmealId);
+    }
+
+    /**
+     * 菜品或套餐修改的事务提交后使缓存失效，并通知其他实例
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuChange(MenuChangeEvent event) {
+        version.incrementAndGet();
+        try {
+            Long remote = stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+            remoteVersion = String.valueOf(remote);
+        } catch (Exception e) {
+            //本机缓存已失效，其他实例的缓存在下一次版本号更新成功后失效
+            log.error("商品快照版本号更新失败：{}", event, e);
+        }
+    }
+
+    /**
+     * 定期检查Redis中的版本号，其他实例修改了菜品或套餐时使本机缓存失效
+     */
+    @Scheduled(fixedDelayString = "${sky.order.product-cache-version-poll-millis:5000}")
+    public void checkVersion() {
+        try {
+            String remote = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            if (!Objects.equals(remote, remoteVersion)) {
+                remoteVersion = remote;
+                version.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.error("商品快照版本号检查失败", e);
+        }
+    }
+
+    private ProductSnapshot get(Map<Long, Entry> map, Long id, Function<Long, ProductSnapshot> loader) {
+        long current = version.get();
+        Entry entry = map.get(id);
+        if (entry != null && entry.version == current) {
+            return entry.snapshot;
+        }
+
+        //使用加载前的版本号，加载期间发生修改时该缓存项在下次读取时重新加载
+        ProductSnapshot snapshot = loader.apply(id);
+        if (snapshot == null) {
+            map.remove(id);
+        } else {
+            map.put(id, new Entry(snapshot, current));
+        }
+        return snapshot;
+    }
+
+    private Map<Long, Entry> createLruMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > orderProperties.getProductCacheSize();
+            }
+        });
+    }
+
+    private static class Entry {
+        private final ProductSnapshot snapshot;
+        private final long version;
+
+        private Entry(ProductSnapshot snapshot, long version) {
+            this.snapshot = snapshot;
+            this.version = version;
+        }
+    }
+}
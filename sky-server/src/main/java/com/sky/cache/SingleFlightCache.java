@@ -0,0 +1,120 @@
+package com.sky.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内短时缓存，同一个key同时只有一个线程执行加载，其余并发请求等待并共享该结果
+ * @param <K>
+ * @param <V>
+ */
+public class SingleFlightCache<K, V> {
+
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    //命中已缓存结果的次数
+    private final LongAdder hits = new LongAdder();
+
+    //执行加载的次数
+    private final LongAdder misses = new LongAdder();
+
+    //等待其他线程正在进行的加载的次数
+    private final LongAdder coalesced = new LongAdder();
+
+    public SingleFlightCache(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * 获取缓存值，不存在或已过期时由当前线程加载，加载中的key直接等待加载结果
+     * @param key
+     * @param loader
+     * @return
+     */
+    public V get(K key, Supplier<V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && !entry.isExpired(System.nanoTime())) {
+            return await(entry);
+        }
+
+        Entry<V> newEntry = new Entry<>();
+        Entry<V> current = entries.compute(key,
+                (k, old) -> old != null && !old.isExpired(System.nanoTime()) ? old : newEntry);
+        if (current != newEntry) {
+            return await(current);
+        }
+
+        misses.increment();
+        //加载时顺便清理已过期的key，避免按时间段生成的key不断累积
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> e != newEntry && e.isExpired(now));
+        try {
+            V value = loader.get();
+            newEntry.expireAt = System.nanoTime() + ttlNanos;
+            newEntry.future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            //加载失败（包括Error）不缓存，等待中的请求一起失败
+            entries.remove(key, newEntry);
+            newEntry.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 删除全部缓存
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private V await(Entry<V> entry) {
+        if (entry.future.isDone()) {
+            hits.increment();
+        } else {
+            coalesced.increment();
+        }
+
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Entry<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+
+        //加载完成前不过期
+        private volatile long expireAt = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return expireAt != Long.MAX_VALUE && now - expireAt > 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.sky.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 两级缓存：一级为本机内存（Caffeine），二级为Redis
+ * 读取时先查本机内存，未命中再查Redis，Redis也未命中时加载并写入两级缓存；
+ * 修改和删除时先修改Redis再修改本机内存，并通知其他实例删除本机内存中的对应条目；
+ * 加载期间本机发生过删除或收到失效通知时，加载结果只返回给本次调用，不写入两级缓存
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+
+    private final Cache redisCache;
+
+    //通知其他实例删除本机缓存，参数为缓存名称和key，key为null表示清空
+    private final BiConsumer<String, String> invalidationPublisher;
+
+    //每次删除、清空或收到失效通知时加一，用于判断加载期间缓存是否失效过
+    private final AtomicLong generation = new AtomicLong();
+
+    public TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                         Cache redisCache, BiConsumer<String, String> invalidationPublisher) {
+        super(true);
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = key.toString();
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            return value;
+        }
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        value = toStoreValue(wrapper.get());
+        localCache.put(localKey, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        long loadGeneration = generation.get();
+        Object[] staleValue = new Object[1];
+        //同一个key在本机同时只有一个线程查询Redis或加载数据
+        Object value = localCache.get(key.toString(), k -> {
+            ValueWrapper wrapper = redisCache.get(key);
+            if (wrapper != null) {
+                return toStoreValue(wrapper.get());
+            }
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            //加载期间缓存失效过，结果可能是修改前的数据，不写入缓存（返回null时本机缓存不保存）
+            if (generation.get() != loadGeneration) {
+                staleValue[0] = toStoreValue(loaded);
+                return null;
+            }
+            redisCache.put(key, loaded);
+            //写入Redis前后之间发生的失效可能已先删除了Redis，再删除一次
+            if (generation.get() != loadGeneration) {
+                redisCache.evict(key);
+                staleValue[0] = toStoreValue(loaded);
+                return null;
+            }
+            return toStoreValue(loaded);
+        });
+        if (value == null) {
+            value = staleValue[0];
+        }
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        String localKey = key.toString();
+        localCache.put(localKey, toStoreValue(value));
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        generation.incrementAndGet();
+        redisCache.evict(key);
+        String localKey = key.toString();
+        localCache.invalidate(localKey);
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        generation.incrementAndGet();
+        redisCache.clear();
+        localCache.invalidateAll();
+        invalidationPublisher.accept(name, null);
+    }
+
+    /**
+     * 收到其他实例的通知后删除本机缓存，不修改Redis
+     * @param key 为null时清空本机缓存
+     */
+    void invalidateLocal(String key) {
+        generation.incrementAndGet();
+        if (key == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+}
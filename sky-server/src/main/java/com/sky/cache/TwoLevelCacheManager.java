@@ -0,0 +1,104 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.MenuCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 两级缓存管理器，为每个缓存名称创建 TwoLevelCache
+ * 缓存修改后在Redis频道 cache:invalidate 发布失效通知，其他实例收到后删除本机内存中的对应条目；
+ * 通知丢失时本机条目最多保留 localTtlSeconds 秒
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    public static final String CHANNEL = "cache:invalidate";
+
+    private final RedisCacheManager redisCacheManager;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final MenuCacheProperties menuCacheProperties;
+
+    //区分自己发布的通知
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, StringRedisTemplate stringRedisTemplate,
+                                MenuCacheProperties menuCacheProperties) {
+        this.redisCacheManager = redisCacheManager;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.menuCacheProperties = menuCacheProperties;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 处理其他实例发布的失效通知
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject body;
+        try {
+            body = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("忽略无法解析的缓存失效通知：{}", new String(message.getBody(), StandardCharsets.UTF_8));
+            return;
+        }
+        if (instanceId.equals(body.getString("instance"))) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(body.getString("cache"));
+        if (cache != null) {
+            cache.invalidateLocal(body.getString("key"));
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        com.github.benmanes.caffeine.cache.Cache<String, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(menuCacheProperties.getLocalMaximumSize())
+                .expireAfterWrite(Duration.ofSeconds(menuCacheProperties.getLocalTtlSeconds()))
+                .build();
+        return new TwoLevelCache(name, localCache, redisCacheManager.getCache(name), this::publish);
+    }
+
+    private void publish(String cacheName, String key) {
+        JSONObject body = new JSONObject();
+        body.put("instance", instanceId);
+        body.put("cache", cacheName);
+        body.put("key", key);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, body.toJSONString());
+        } catch (Exception e) {
+            //其他实例的本机缓存在过期后自动失效
+            log.error("发布缓存失效通知失败：{}", body, e);
+        }
+    }
+}
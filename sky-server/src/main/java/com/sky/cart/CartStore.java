@@ -0,0 +1,67 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+/**
+ * 购物车存储
+ * 购物车中的商品由 userId + dishId + dishFlavor 或 userId + setmealId 确定
+ */
+public interface CartStore {
+
+    /**
+     * 查询用户购物车
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> list(Long userId);
+
+    /**
+     * 购物车中已有的商品增加数量
+     * @param item 只使用userId、dishId、dishFlavor、setmealId
+     * @param count 增加的数量
+     * @return 购物车中没有该商品时返回false
+     */
+    boolean increase(ShoppingCart item, int count);
+
+    /**
+     * 添加商品，购物车中已有该商品时累加数量
+     * @param shoppingCart 包含名称、图片、单价和数量
+     */
+    void insert(ShoppingCart shoppingCart);
+
+    /**
+     * 批量添加商品，购物车中已有的商品累加数量
+     * @param shoppingCartList
+     */
+    void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 减少商品数量，减到0时删除该商品；购物车中没有该商品时不做处理
+     * @param item 只使用userId、dishId、dishFlavor、setmealId
+     * @param count 减少的数量
+     */
+    void decrease(ShoppingCart item, int count);
+
+    /**
+     * 批量修改商品数量，版本号检查和全部修改一起生效
+     * @param userId
+     * @param version 批次版本号，不大于已处理的版本号时不做修改
+     * @param items 每个商品一项，number为数量变化，大于0时需要包含名称、图片和单价
+     * @return 版本号重复时返回false
+     */
+    boolean applyBatch(Long userId, long version, List<ShoppingCart> items);
+
+    /**
+     * 删除购物车中的指定商品，可以包含多个用户的数据
+     * @param items list 返回的购物车数据
+     */
+    void remove(List<ShoppingCart> items);
+
+    /**
+     * 清空用户购物车
+     * @param userId
+     */
+    void clean(Long userId);
+}
@@ -0,0 +1,75 @@
+package com.sky.cart;
+
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 保存在shopping_cart表中的购物车（sky.cart.store=db，默认）
+ * 每次加减都是一条语句：按商品条件直接加减数量，新商品通过 insert ... on duplicate key update 写入，并发点击不会产生重复行
+ */
+@Component
+@ConditionalOnProperty(name = "sky.cart.store", havingValue = "db", matchIfMissing = true)
+public class DbCartStore implements CartStore {
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    public List<ShoppingCart> list(Long userId) {
+        return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+    }
+
+    public boolean increase(ShoppingCart item, int count) {
+        return shoppingCartMapper.increaseNumber(item, count) > 0;
+    }
+
+    public void insert(ShoppingCart shoppingCart) {
+        shoppingCartMapper.insert(shoppingCart);
+    }
+
+    public void insertBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
+
+    public void decrease(ShoppingCart item, int count) {
+        //如果商品数量大于减少的数量，则只需要更新数量；否则直接删除
+        if (shoppingCartMapper.decreaseNumber(item, count) == 0) {
+            shoppingCartMapper.deleteIfNotMore(item, count);
+        }
+    }
+
+    /**
+     * 版本号行锁保证同一用户的批次串行执行，需要在调用方的事务中执行
+     */
+    public boolean applyBatch(Long userId, long version, List<ShoppingCart> items) {
+        shoppingCartMapper.insertVersionIfAbsent(userId);
+        if (shoppingCartMapper.advanceVersion(userId, version) == 0) {
+            return false;
+        }
+        for (ShoppingCart item : items) {
+            int count = item.getNumber();
+            if (count < 0) {
+                decrease(item, -count);
+            } else if (!increase(item, count)) {
+                insert(item);
+            }
+        }
+        return true;
+    }
+
+    public void remove(List<ShoppingCart> items) {
+        List<Long> ids = items.stream().map(ShoppingCart::getId).collect(Collectors.toList());
+        if (!ids.isEmpty()) {
+            shoppingCartMapper.deleteByIds(ids);
+        }
+    }
+
+    public void clean(Long userId) {
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+}
@@ -0,0 +1,322 @@
+package com.sky.cart;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.annotation.ScheduledLease;
+import com.sky.context.LeaseContext;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.CartProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保存在Redis哈希中的购物车（sky.cart.store=redis），购物车操作不访问数据库
+ * 每个用户两个哈希，字段为 d:{菜品id}:{口味} 或 s:{套餐id}：
+ * cart:{userId} 的值为 单价（分）× 1000000 + 数量，数量通过 HINCRBY 原子修改；
+ * cart:{userId}:item 的值为商品名称、图片和加入时间的JSON；cart:{userId}:version 为已处理的批量修改版本号。
+ * 开启快照时，修改过的用户记录在集合 cart:dirty 中，定期同步到shopping_cart表
+ */
+@Component
+@ConditionalOnProperty(name = "sky.cart.store", havingValue = "redis")
+@Slf4j
+public class RedisCartStore implements CartStore {
+
+    private static final String KEY_PREFIX = "cart:";
+    private static final String DIRTY_KEY = KEY_PREFIX + "dirty";
+
+    //数量所占的位数，单价左移后与数量相加保存在一个整数中
+    private static final long NUMBER_UNIT = 1000000L;
+
+    //商品已存在时增加数量，返回新数量；不存在时返回0
+    private static final DefaultRedisScript<Long> INCREASE_SCRIPT = new DefaultRedisScript<>(
+            "local old = redis.call('hget', KEYS[1], ARGV[1]) "
+                    + "if not old then return 0 end "
+                    + "if tonumber(old) % 1000000 + tonumber(ARGV[2]) >= 1000000 then "
+                    + "return redis.error_reply('cart item number overflow') end "
+                    + "local v = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[3]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[3]) "
+                    + "return v % 1000000", Long.class);
+
+    //商品已存在时累加数量，不存在时写入单价、数量和商品信息
+    private static final DefaultRedisScript<Long> INSERT_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('hget', KEYS[1], ARGV[1]) "
+                    + "if v then "
+                    + "if tonumber(v) % 1000000 + tonumber(ARGV[2]) >= 1000000 then "
+                    + "return redis.error_reply('cart item number overflow') end "
+                    + "v = redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "else "
+                    + "redis.call('hset', KEYS[1], ARGV[1], ARGV[3]) "
+                    + "redis.call('hset', KEYS[2], ARGV[1], ARGV[4]) "
+                    + "v = tonumber(ARGV[3]) "
+                    + "end "
+                    + "redis.call('pexpire', KEYS[1], ARGV[5]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[5]) "
+                    + "return v % 1000000", Long.class);
+
+    //减少数量，减到0时删除商品；商品不存在时返回-1
+    private static final DefaultRedisScript<Long> DECREASE_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('hget', KEYS[1], ARGV[1]) "
+                    + "if not v then return -1 end "
+                    + "if tonumber(v) % 1000000 <= tonumber(ARGV[2]) then "
+                    + "redis.call('hdel', KEYS[1], ARGV[1]) "
+                    + "redis.call('hdel', KEYS[2], ARGV[1]) "
+                    + "return 0 "
+                    + "end "
+                    + "local n = redis.call('hincrby', KEYS[1], ARGV[1], -tonumber(ARGV[2])) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[3]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[3]) "
+                    + "return n % 1000000", Long.class);
+
+    //批量修改：版本号大于 KEYS[3] 中已处理的版本时，先检查全部商品再一起修改，返回1；版本号重复返回0
+    //ARGV[1]为版本号，ARGV[2]为过期时间，之后每个商品4个参数：字段、数量变化、新商品的打包值、新商品信息
+    private static final DefaultRedisScript<Long> BATCH_SCRIPT = new DefaultRedisScript<>(
+            "local last = tonumber(redis.call('get', KEYS[3]) or '-1') "
+                    + "if tonumber(ARGV[1]) <= last then return 0 end "
+                    + "for i = 3, #ARGV, 4 do "
+                    + "local n = tonumber(ARGV[i + 1]) "
+                    + "local v = redis.call('hget', KEYS[1], ARGV[i]) "
+                    + "if v and n > 0 and tonumber(v) % 1000000 + n >= 1000000 then "
+                    + "return redis.error_reply('cart item number overflow') end "
+                    + "end "
+                    + "for i = 3, #ARGV, 4 do "
+                    + "local n = tonumber(ARGV[i + 1]) "
+                    + "local v = redis.call('hget', KEYS[1], ARGV[i]) "
+                    + "if v then "
+                    + "if n > 0 or tonumber(v) % 1000000 > -n then "
+                    + "redis.call('hincrby', KEYS[1], ARGV[i], n) "
+                    + "else "
+                    + "redis.call('hdel', KEYS[1], ARGV[i]) "
+                    + "redis.call('hdel', KEYS[2], ARGV[i]) "
+                    + "end "
+                    + "elseif n > 0 then "
+                    + "redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 2]) "
+                    + "redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 3]) "
+                    + "end "
+                    + "end "
+                    + "redis.call('set', KEYS[3], ARGV[1], 'PX', ARGV[2]) "
+                    + "redis.call('pexpire', KEYS[1], ARGV[2]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[2]) "
+                    + "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CartProperties cartProperties;
+
+    @Autowired
+    private ShoppingCartMapper shoppingCartMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public List<ShoppingCart> list(Long userId) {
+        Map<Object, Object> counts = stringRedisTemplate.opsForHash().entries(countKey(userId));
+        if (counts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(itemKey(userId));
+
+        List<ShoppingCart> list = new ArrayList<>(counts.size());
+        for (Map.Entry<Object, Object> entry : counts.entrySet()) {
+            String field = (String) entry.getKey();
+            long packed = Long.parseLong((String) entry.getValue());
+
+            Object json = items.get(field);
+            ShoppingCart cart = json == null ? new ShoppingCart() : JSON.parseObject((String) json, ShoppingCart.class);
+            cart.setUserId(userId);
+            parseField(field, cart);
+            cart.setNumber((int) (packed % NUMBER_UNIT));
+            cart.setAmount(BigDecimal.valueOf(packed / NUMBER_UNIT, 2));
+            list.add(cart);
+        }
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
+
+    public boolean increase(ShoppingCart item, int count) {
+        Long number = stringRedisTemplate.execute(INCREASE_SCRIPT,
+                Arrays.asList(countKey(item.getUserId()), itemKey(item.getUserId())),
+                field(item), String.valueOf(count), ttlMillis());
+        if (number != null && number > 0) {
+            markDirty(item.getUserId());
+            return true;
+        }
+        return false;
+    }
+
+    public void insert(ShoppingCart shoppingCart) {
+        stringRedisTemplate.execute(INSERT_SCRIPT,
+                Arrays.asList(countKey(shoppingCart.getUserId()), itemKey(shoppingCart.getUserId())),
+                field(shoppingCart),
+                String.valueOf(shoppingCart.getNumber()),
+                String.valueOf(pack(shoppingCart)),
+                infoJson(shoppingCart),
+                ttlMillis());
+        markDirty(shoppingCart.getUserId());
+    }
+
+    public void insertBatch(List<ShoppingCart> shoppingCartList) {
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            insert(shoppingCart);
+        }
+    }
+
+    public void decrease(ShoppingCart item, int count) {
+        Long number = stringRedisTemplate.execute(DECREASE_SCRIPT,
+                Arrays.asList(countKey(item.getUserId()), itemKey(item.getUserId())),
+                field(item), String.valueOf(count), ttlMillis());
+        if (number != null && number >= 0) {
+            markDirty(item.getUserId());
+        }
+    }
+
+    /**
+     * 版本号检查和全部修改在一个脚本中执行，不会只修改一部分商品
+     */
+    public boolean applyBatch(Long userId, long version, List<ShoppingCart> items) {
+        List<String> args = new ArrayList<>(2 + items.size() * 4);
+        args.add(String.valueOf(version));
+        args.add(ttlMillis());
+        for (ShoppingCart item : items) {
+            args.add(field(item));
+            args.add(String.valueOf(item.getNumber()));
+            args.add(item.getNumber() > 0 ? String.valueOf(pack(item)) : "");
+            args.add(item.getNumber() > 0 ? infoJson(item) : "");
+        }
+        Long applied = stringRedisTemplate.execute(BATCH_SCRIPT,
+                Arrays.asList(countKey(userId), itemKey(userId), versionKey(userId)), args.toArray());
+        if (applied == null || applied == 0) {
+            return false;
+        }
+        markDirty(userId);
+        return true;
+    }
+
+    public void remove(List<ShoppingCart> items) {
+        Map<Long, List<Object>> fieldsByUser = new LinkedHashMap<>();
+        for (ShoppingCart item : items) {
+            fieldsByUser.computeIfAbsent(item.getUserId(), k -> new ArrayList<>()).add(field(item));
+        }
+        fieldsByUser.forEach((userId, fields) -> {
+            stringRedisTemplate.opsForHash().delete(countKey(userId), fields.toArray());
+            stringRedisTemplate.opsForHash().delete(itemKey(userId), fields.toArray());
+            markDirty(userId);
+        });
+    }
+
+    public void clean(Long userId) {
+        stringRedisTemplate.delete(Arrays.asList(countKey(userId), itemKey(userId)));
+        markDirty(userId);
+    }
+
+    /**
+     * 把修改过的购物车同步到shopping_cart表
+     */
+    @Scheduled(fixedDelayString = "${sky.cart.snapshot-interval-millis:60000}")
+    @ScheduledLease("cartStore:snapshot")
+    public void snapshot() {
+        if (!cartProperties.isSnapshotEnabled()) {
+            return;
+        }
+        List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, cartProperties.getSnapshotBatchSize());
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < userIds.size(); i++) {
+            if (LeaseContext.isLeaseLost()) {
+                //租约丢失，剩余用户放回集合，由持有租约的实例同步
+                log.warn("定时任务租约已丢失，停止购物车快照同步，剩余用户数：{}", userIds.size() - i);
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, userIds.subList(i, userIds.size()).toArray(new String[0]));
+                return;
+            }
+            String id = userIds.get(i);
+            Long userId = Long.valueOf(id);
+            try {
+                List<ShoppingCart> list = list(userId);
+                transactionTemplate.executeWithoutResult(status -> {
+                    shoppingCartMapper.deleteByUserId(userId);
+                    if (!list.isEmpty()) {
+                        shoppingCartMapper.insertBatch(list);
+                    }
+                });
+            } catch (Exception e) {
+                //失败的用户放回集合，下次重试
+                log.error("购物车快照同步失败，用户id：{}", userId, e);
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, id);
+            }
+        }
+        log.info("购物车快照同步完成，用户数：{}", userIds.size());
+    }
+
+    private void markDirty(Long userId) {
+        if (cartProperties.isSnapshotEnabled()) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, userId.toString());
+        }
+    }
+
+    private String ttlMillis() {
+        return String.valueOf(TimeUnit.DAYS.toMillis(cartProperties.getTtlDays()));
+    }
+
+    //两个哈希使用相同的hash tag，保证Redis集群下位于同一slot
+    private static String countKey(Long userId) {
+        return KEY_PREFIX + "{" + userId + "}";
+    }
+
+    private static String itemKey(Long userId) {
+        return KEY_PREFIX + "{" + userId + "}:item";
+    }
+
+    private static String versionKey(Long userId) {
+        return KEY_PREFIX + "{" + userId + "}:version";
+    }
+
+    //单价（分）× 1000000 + 数量
+    private static long pack(ShoppingCart shoppingCart) {
+        long priceCents = shoppingCart.getAmount().movePointRight(2).longValueExact();
+        return priceCents * NUMBER_UNIT + shoppingCart.getNumber();
+    }
+
+    private static String infoJson(ShoppingCart shoppingCart) {
+        ShoppingCart info = new ShoppingCart();
+        info.setName(shoppingCart.getName());
+        info.setImage(shoppingCart.getImage());
+        info.setCreateTime(shoppingCart.getCreateTime() != null ? shoppingCart.getCreateTime() : LocalDateTime.now());
+        return JSON.toJSONString(info);
+    }
+
+    private static String field(ShoppingCart item) {
+        if (item.getDishId() != null) {
+            return "d:" + item.getDishId() + ":" + (item.getDishFlavor() == null ? "" : item.getDishFlavor());
+        }
+        return "s:" + item.getSetmealId();
+    }
+
+    private static void parseField(String field, ShoppingCart cart) {
+        if (field.startsWith("d:")) {
+            String[] parts = field.split(":", 3);
+            cart.setDishId(Long.valueOf(parts[1]));
+            cart.setDishFlavor(parts[2].isEmpty() ? null : parts[2]);
+        } else {
+            cart.setSetmealId(Long.valueOf(field.substring(2)));
+        }
+    }
+}
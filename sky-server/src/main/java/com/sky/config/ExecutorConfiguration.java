@@ -0,0 +1,52 @@
+package com.sky.config;
+
+import com.sky.properties.ReportProperties;
+import com.sky.properties.WorkspaceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 配置类，创建后台任务使用的有界线程池，避免占用处理请求的Tomcat线程
+ */
+@Configuration
+@Slf4j
+public class ExecutorConfiguration {
+
+    /**
+     * 报表导出线程池，队列满时直接拒绝，防止月底集中导出拖垮下单等接口
+     * @param reportProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reportExportExecutor(ReportProperties reportProperties) {
+        log.info("开始创建报表导出线程池:{}", reportProperties.getExportThreads());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(reportProperties.getExportThreads());
+        executor.setMaxPoolSize(reportProperties.getExportThreads());
+        executor.setQueueCapacity(reportProperties.getExportQueueCapacity());
+        executor.setThreadNamePrefix("report-export-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * 工作台并行查询线程池，队列满时拒绝，对应的数据项按超时处理
+     * @param workspaceProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor workspaceExecutor(WorkspaceProperties workspaceProperties) {
+        log.info("开始创建工作台查询线程池:{}", workspaceProperties.getSnapshotThreads());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workspaceProperties.getSnapshotThreads());
+        executor.setMaxPoolSize(workspaceProperties.getSnapshotThreads());
+        executor.setQueueCapacity(workspaceProperties.getSnapshotQueueCapacity());
+        executor.setThreadNamePrefix("workspace-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
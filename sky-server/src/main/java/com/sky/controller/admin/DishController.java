@@ -14,11 +14,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.logging.log4j.message.ReusableMessage;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * 菜品管理
@@ -32,9 +31,6 @@ public class DishController {
     @Autowired
     private DishService dishService;
 
-    @Autowired
-    private RedisTemplate redisTemplate;
-
     /**
      * 新增菜品
      * @param dishDTO
@@ -42,14 +38,10 @@ public class DishController {
      */
     @PostMapping
     @ApiOperation("新增菜品")
+    @CacheEvict(cacheNames = "dishCache", key = "#dishDTO.categoryId")
     public Result save(@RequestBody DishDTO dishDTO) {
         log.info("新增菜品:{}", dishDTO);
         dishService.saveWithFlavor(dishDTO);
-
-        //清理缓存数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        cleanCache(key);
-
         return Result.success();
     }
 
@@ -73,13 +65,11 @@ public class DishController {
      */
     @DeleteMapping
     @ApiOperation("批量删除菜品")
+    @CacheEvict(cacheNames = "dishCache", allEntries = true)
     public Result delete(@RequestParam List<Long> ids){
         log.info("菜品批量删除:{}", ids);
         dishService.deleteBatch(ids);
 
-        //将所有菜品缓存数据清理
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -103,13 +93,11 @@ public class DishController {
      */
     @PutMapping
     @ApiOperation("编辑菜品信息")
+    @CacheEvict(cacheNames = "dishCache", allEntries = true)
     public Result update(@RequestBody DishDTO dishDTO){
         log.info("修改菜品:{}", dishDTO);
         dishService.updateWithFlavor(dishDTO);
 
-        //将所有菜品缓存数据清理
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -119,13 +107,11 @@ public class DishController {
      */
     @PostMapping("/status/{status}")
     @ApiOperation("菜品起售停售")
+    @CacheEvict(cacheNames = "dishCache", allEntries = true)
     public Result setStatus(@PathVariable Integer status, Long id){
         log.info("更改ID为{}菜品售卖状态为：{}", id, status == 1 ? "起售" : "停售");
         dishService.setStatus(status, id);
 
-        //将所有菜品缓存数据清理
-        cleanCache("dish_*");
-
         return Result.success();
     }
 
@@ -141,13 +127,4 @@ public class DishController {
         List<Dish> dishlist = dishService.getDishListByCategoryId(categoryId);
         return Result.success(dishlist);
     }
-
-    /**
-     * 删除所有redis缓存数据
-     * @param pattern
-     */
-    private void cleanCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
-    }
 }
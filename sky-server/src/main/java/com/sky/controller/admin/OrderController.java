@@ -1,12 +1,16 @@
 package com.sky.controller.admin;
 
+import com.sky.dto.OrdersBatchDTO;
 import com.sky.dto.OrdersCancelDTO;
 import com.sky.dto.OrdersConfirmDTO;
+import com.sky.dto.OrdersCursorQueryDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersRejectionDTO;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
+import com.sky.vo.OrderBatchResultVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderVO;
 import io.swagger.annotations.Api;
@@ -37,6 +41,19 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 订单游标搜索，翻页成本与页码无关
+     *
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    @GetMapping("/conditionSearch/cursor")
+    @ApiOperation("订单游标搜索")
+    public Result<CursorPageResult> conditionSearchByCursor(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        CursorPageResult cursorPageResult = orderService.conditionSearchByCursor(ordersCursorQueryDTO);
+        return Result.success(cursorPageResult);
+    }
+
     /**
      * 各个状态的订单数量统计
      *
@@ -121,4 +138,37 @@ public class OrderController {
         orderService.complete(id);
         return Result.success();
     }
+
+    /**
+     * 批量接单
+     *
+     * @return
+     */
+    @PutMapping("/batch/confirm")
+    @ApiOperation("批量接单")
+    public Result<OrderBatchResultVO> batchConfirm(@RequestBody OrdersBatchDTO ordersBatchDTO) {
+        return Result.success(orderService.batchConfirm(ordersBatchDTO.getIds()));
+    }
+
+    /**
+     * 批量派送订单
+     *
+     * @return
+     */
+    @PutMapping("/batch/delivery")
+    @ApiOperation("批量派送订单")
+    public Result<OrderBatchResultVO> batchDelivery(@RequestBody OrdersBatchDTO ordersBatchDTO) {
+        return Result.success(orderService.batchDelivery(ordersBatchDTO.getIds()));
+    }
+
+    /**
+     * 批量完成订单
+     *
+     * @return
+     */
+    @PutMapping("/batch/complete")
+    @ApiOperation("批量完成订单")
+    public Result<OrderBatchResultVO> batchComplete(@RequestBody OrdersBatchDTO ordersBatchDTO) {
+        return Result.success(orderService.batchComplete(ordersBatchDTO.getIds()));
+    }
 }
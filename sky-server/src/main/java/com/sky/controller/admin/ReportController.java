@@ -1,8 +1,15 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.DailyStatsService;
+import com.sky.service.ReportExportService;
 import com.sky.service.ReportService;
+import com.sky.service.SalesLeaderboardService;
+import com.sky.vo.CategorySalesReportVO;
+import com.sky.vo.HeatmapReportVO;
+import com.sky.vo.HourlyReportVO;
 import com.sky.vo.OrderReportVO;
+import com.sky.vo.ReportExportJobVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
@@ -13,10 +20,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -29,6 +42,15 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private DailyStatsService dailyStatsService;
+
+    @Autowired
+    private ReportExportService reportExportService;
+
+    @Autowired
+    private SalesLeaderboardService salesLeaderboardService;
+
     /**
      * 营业额数据统计
      * @param begin
@@ -89,6 +111,51 @@ public class ReportController {
         return Result.success(reportService.getSalesTop10(begin, end));
     }
 
+    /**
+     * 分类销量统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    @ApiOperation("分类销量统计")
+    @GetMapping("/categorySales")
+    public Result<CategorySalesReportVO> categorySales(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd")LocalDate end){
+        log.info("分类销量统计:{},{}", begin, end);
+        return Result.success(reportService.getCategorySales(begin, end));
+    }
+
+    /**
+     * 分时段统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    @ApiOperation("分时段统计")
+    @GetMapping("/hourlyStatistics")
+    public Result<HourlyReportVO> hourlyStatistics(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd")LocalDate end){
+        log.info("分时段统计:{},{}", begin, end);
+        return Result.success(reportService.getHourlyStatistics(begin, end));
+    }
+
+    /**
+     * 星期×时段热力图
+     * @param begin
+     * @param end
+     * @return
+     */
+    @ApiOperation("星期×时段热力图")
+    @GetMapping("/heatmap")
+    public Result<HeatmapReportVO> heatmap(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd")LocalDate end){
+        log.info("星期×时段热力图:{},{}", begin, end);
+        return Result.success(reportService.getHeatmap(begin, end));
+    }
+
     /**
      * 导出运营数据报表
      * @param httpServletResponse
@@ -100,5 +167,103 @@ public class ReportController {
         reportService.exportBusinessData(httpServletResponse);
     }
 
+    /**
+     * 流式导出任意日期区间的运营数据报表
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
+     * @param httpServletResponse
+     */
+    @ApiOperation("流式导出运营数据报表")
+    @GetMapping("/export/stream")
+    public void exportStream(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            @RequestParam(defaultValue = "false") boolean detail,
+            HttpServletResponse httpServletResponse) throws IOException {
+        log.info("流式导出运营数据报表:{},{},明细:{}", begin, end, detail);
+        //设置下载响应头之前校验区间，区间不合法时正常返回错误信息
+        reportService.checkExportRange(begin, end);
+        httpServletResponse.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        httpServletResponse.setHeader("Content-Disposition",
+                "attachment; filename=business-" + begin + "-" + end + ".xlsx");
+        reportService.exportBusinessData(begin, end, detail, httpServletResponse.getOutputStream(), null);
+    }
+
+    /**
+     * 提交异步导出任务
+     * @param begin
+     * @param end
+     * @param detail 是否附带订单明细
+     * @return
+     */
+    @ApiOperation("提交异步导出任务")
+    @PostMapping("/export/jobs")
+    public Result<ReportExportJobVO> submitExportJob(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+            @RequestParam(defaultValue = "false") boolean detail){
+        log.info("提交异步导出任务:{},{},明细:{}", begin, end, detail);
+        return Result.success(reportExportService.submit(begin, end, detail));
+    }
+
+    /**
+     * 查询异步导出任务进度
+     * @param jobId
+     * @return
+     */
+    @ApiOperation("查询异步导出任务进度")
+    @GetMapping("/export/jobs/{jobId}")
+    public Result<ReportExportJobVO> getExportJob(@PathVariable String jobId){
+        return Result.success(reportExportService.getJob(jobId));
+    }
+
+    /**
+     * 下载异步导出任务生成的文件
+     * @param jobId
+     * @param httpServletResponse
+     */
+    @ApiOperation("下载异步导出文件")
+    @GetMapping("/export/jobs/{jobId}/file")
+    public void downloadExportFile(@PathVariable String jobId, HttpServletResponse httpServletResponse) throws IOException {
+        File file = reportExportService.getArtifact(jobId);
+        httpServletResponse.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        httpServletResponse.setHeader("Content-Disposition", "attachment; filename=business-" + jobId + ".xlsx");
+        httpServletResponse.setContentLengthLong(file.length());
+        Files.copy(file.toPath(), httpServletResponse.getOutputStream());
+    }
+
+    /**
+     * 重新计算每日汇总数据（首次启用汇总表时回填历史数据）
+     * @param begin
+     * @param end
+     * @return
+     */
+    @ApiOperation("重新计算每日汇总数据")
+    @PostMapping("/rollup/rebuild")
+    public Result rebuildRollup(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd")LocalDate end){
+        log.info("重新计算每日汇总数据:{},{}", begin, end);
+        dailyStatsService.rebuild(begin, end);
+        return Result.success();
+    }
+
+    /**
+     * 根据订单数据重建商品销量排行
+     * @param begin
+     * @param end
+     * @return
+     */
+    @ApiOperation("重建商品销量排行")
+    @PostMapping("/leaderboard/rebuild")
+    public Result rebuildLeaderboard(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd")LocalDate end){
+        log.info("重建商品销量排行:{},{}", begin, end);
+        salesLeaderboardService.rebuild(begin, end);
+        return Result.success();
+    }
+
 
 }
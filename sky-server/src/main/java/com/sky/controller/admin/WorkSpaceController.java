@@ -1,11 +1,15 @@
 package com.sky.controller.admin;
 
+import com.sky.aspect.ScheduledLeaseAspect;
 import com.sky.result.Result;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
+import com.sky.vo.CacheStatsVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
+import com.sky.vo.ScheduledLeaseStatsVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceSnapshotVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +19,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.List;
 
 /**
  * 工作台
@@ -28,6 +33,9 @@ public class WorkSpaceController {
     @Autowired
     private WorkspaceService workspaceService;
 
+    @Autowired
+    private ScheduledLeaseAspect scheduledLeaseAspect;
+
     /**
      * 工作台今日数据查询
      * @return
@@ -73,4 +81,36 @@ public class WorkSpaceController {
     public Result<SetmealOverViewVO> setmealOverView(){
         return Result.success(workspaceService.getSetmealOverView());
     }
+
+    /**
+     * 一次请求并行查询工作台全部数据
+     * @return
+     */
+    @GetMapping("/snapshot")
+    @ApiOperation("查询工作台全部数据")
+    public Result<WorkspaceSnapshotVO> snapshot(){
+        LocalDateTime begin = LocalDateTime.now().with(LocalTime.MIN);
+        LocalDateTime end = LocalDateTime.now().with(LocalTime.MAX);
+        return Result.success(workspaceService.getSnapshot(begin, end));
+    }
+
+    /**
+     * 查询工作台缓存命中统计
+     * @return
+     */
+    @GetMapping("/cacheStats")
+    @ApiOperation("查询工作台缓存命中统计")
+    public Result<CacheStatsVO> cacheStats(){
+        return Result.success(workspaceService.getCacheStats());
+    }
+
+    /**
+     * 查询当前实例的定时任务租约统计
+     * @return
+     */
+    @GetMapping("/leaseStats")
+    @ApiOperation("查询当前实例的定时任务租约统计")
+    public Result<List<ScheduledLeaseStatsVO>> leaseStats(){
+        return Result.success(scheduledLeaseAspect.getStats());
+    }
 }
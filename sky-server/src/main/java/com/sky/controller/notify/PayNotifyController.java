@@ -3,6 +3,7 @@ package com.sky.controller.notify;
 import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.order.PayNotifyDeduplicator;
 import com.sky.properties.WeChatProperties;
 import com.sky.service.OrderService;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
@@ -28,6 +29,8 @@ public class PayNotifyController {
     private OrderService orderService;
     @Autowired
     private WeChatProperties weChatProperties;
+    @Autowired
+    private PayNotifyDeduplicator payNotifyDeduplicator;
 
     /**
      * 支付成功回调
@@ -51,8 +54,23 @@ public class PayNotifyController {
         log.info("商户平台订单号：{}", outTradeNo);
         log.info("微信支付交易号：{}", transactionId);
 
+        //重复的回调直接响应，不再修改订单和推送来单提醒
+        if (payNotifyDeduplicator.isProcessed(transactionId)) {
+            log.info("支付回调已处理，忽略重复回调：{}", transactionId);
+            responseToWeixin(response);
+            return;
+        }
+
         //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+        //处理失败（例如异步下单的订单还没有写入数据库）时响应失败，微信支付会稍后重新通知
+        try {
+            orderService.paySuccess(outTradeNo);
+        } catch (Exception e) {
+            log.error("支付回调处理失败，等待微信支付重新通知：{}", outTradeNo, e);
+            responseFailToWeixin(response);
+            return;
+        }
+        payNotifyDeduplicator.markProcessed(transactionId);
 
         //给微信响应
         responseToWeixin(response);
@@ -114,4 +132,18 @@ public class PayNotifyController {
         response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
         response.flushBuffer();
     }
+
+    /**
+     * 给微信响应处理失败，非2xx的状态码会让微信支付重新通知
+     * @param response
+     */
+    private void responseFailToWeixin(HttpServletResponse response) throws Exception{
+        response.setStatus(500);
+        HashMap<Object, Object> map = new HashMap<>();
+        map.put("code", "FAIL");
+        map.put("message", "失败");
+        response.setHeader("Content-type", ContentType.APPLICATION_JSON.toString());
+        response.getOutputStream().write(JSONUtils.toJSONString(map).getBytes(StandardCharsets.UTF_8));
+        response.flushBuffer();
+    }
 }
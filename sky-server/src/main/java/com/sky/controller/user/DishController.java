@@ -9,7 +9,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -23,9 +23,6 @@ public class DishController {
     @Autowired
     private DishService dishService;
 
-    @Autowired
-    private RedisTemplate redisTemplate;
-
     /**
      * 根据分类id查询菜品
      *
@@ -34,28 +31,13 @@ public class DishController {
      */
     @GetMapping("/list")
     @ApiOperation("根据分类id查询菜品")
+    @Cacheable(cacheNames = "dishCache", key = "#categoryId", sync = true)
     public Result<List<DishVO>> list(Long categoryId) {
-        //构造Redis中的key，规则dish_分类id
-        String key = "dish_"  + categoryId;
-
-        //查询Redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if(list != null && list.size() > 0) {
-            //如果存在，直接返回，无需查询数据库
-            log.info("缓存命中，从Redis中获取数据");
-            return Result.success(list);
-        }
-
-        //如果不存在，查询数据库，将查询的数据放入redis
-        log.info("缓存未命中，将查询数据库并缓存到Redis中");
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        //放入Redis
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key, list);
-
+        List<DishVO> list = dishService.listWithFlavor(dish);
         return Result.success(list);
     }
 
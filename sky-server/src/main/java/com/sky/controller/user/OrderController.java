@@ -5,6 +5,7 @@ import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.entity.Orders;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
@@ -83,6 +84,22 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 历史订单游标分页查询，翻页成本与页码无关
+     * @param cursor 上一页返回的nextCursor，第一页不传
+     * @param pageSize
+     * @param status
+     * @param withTotal 是否返回总数
+     * @return
+     */
+    @ApiOperation("历史订单游标分页查询")
+    @GetMapping("/historyOrders/cursor")
+    public Result<CursorPageResult> cursorQuery(String cursor, int pageSize, Integer status,
+                                                @RequestParam(defaultValue = "false") boolean withTotal){
+        CursorPageResult cursorPageResult = orderService.cursorQuery4User(cursor, pageSize, status, withTotal);
+        return Result.success(cursorPageResult);
+    }
+
     /**
      * 用户取消订单
      * @param id
@@ -1,9 +1,11 @@
 package com.sky.controller.user;
 
+import com.sky.dto.ShoppingCartBatchDTO;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.ShoppingCart;
 import com.sky.result.Result;
 import com.sky.service.ShoppingCartService;
+import com.sky.vo.ShoppingCartBatchVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -66,4 +68,17 @@ public class ShoppingCartController {
         shoppingCartService.subShoppingCart(shoppingCartDTO);
         return Result.success();
     }
+
+    /**
+     * 批量修改购物车，客户端合并本地的多次加减操作后一次提交
+     * @param shoppingCartBatchDTO
+     * @return 修改后的购物车
+     */
+    @ApiOperation("批量修改购物车")
+    @PostMapping("/batch")
+    public Result<ShoppingCartBatchVO> batch(@RequestBody ShoppingCartBatchDTO shoppingCartBatchDTO){
+        log.info("批量修改购物车:{}", shoppingCartBatchDTO);
+        ShoppingCartBatchVO shoppingCartBatchVO = shoppingCartService.batch(shoppingCartBatchDTO);
+        return Result.success(shoppingCartBatchVO);
+    }
 }
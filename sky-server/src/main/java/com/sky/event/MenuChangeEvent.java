@@ -0,0 +1,18 @@
+package com.sky.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 菜品或套餐的价格、售卖状态等发生变化的事件
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MenuChangeEvent {
+
+    //变化来源，例如 dish:update
+    private final String source;
+
+}
@@ -0,0 +1,21 @@
+package com.sky.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 已支付订单被取消、需要退款的事件，在订单状态和支付状态修改的事务中发布
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderRefundEvent {
+
+    //订单id
+    private final Long orderId;
+
+    //订单号，同时作为商户退款单号
+    private final String number;
+
+}
@@ -0,0 +1,30 @@
+package com.sky.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 订单状态变化事件，一个事件可以携带同一次批量状态变化涉及的多个订单
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderStatusChangeEvent {
+
+    //发生状态变化的订单id
+    private final List<Long> orderIds;
+
+    //原状态，新建订单时为null
+    private final Integer fromStatus;
+
+    //新状态
+    private final Integer toStatus;
+
+    //涉及订单的总金额，未知时为null
+    private final BigDecimal amount;
+
+}
@@ -0,0 +1,58 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 按订单下单日期累加订单总数
+     * @param orderIds
+     */
+    void increaseTotalOrders(List<Long> orderIds);
+
+    /**
+     * 按订单下单日期累加已完成订单数和营业额
+     * @param orderIds
+     */
+    void increaseCompletedOrders(List<Long> orderIds);
+
+    /**
+     * 按订单下单日期扣减已完成订单数和营业额，用于已完成订单被取消
+     * @param orderIds
+     */
+    void decreaseCompletedOrders(List<Long> orderIds);
+
+    /**
+     * 按订单下单日期累加已取消订单数
+     * @param orderIds
+     */
+    void increaseCancelledOrders(List<Long> orderIds);
+
+    /**
+     * 累加指定日期的新增用户数
+     * @param bizDate
+     * @param count
+     */
+    void increaseNewUsers(LocalDate bizDate, Integer count);
+
+    /**
+     * 批量写入（覆盖）每日汇总数据，用于对账
+     * @param statsList
+     */
+    void upsertBatch(List<DailyBusinessStats> statsList);
+
+    /**
+     * 查询日期区间内的每日汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select * from daily_business_stats where biz_date between #{begin} and #{end} order by biz_date")
+    List<DailyBusinessStats> listByDateRange(LocalDate begin, LocalDate end);
+}
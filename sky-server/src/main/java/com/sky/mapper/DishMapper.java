@@ -4,6 +4,7 @@ import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
+import com.sky.vo.DishOverViewVO;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishVO;
 import org.apache.ibatis.annotations.Delete;
@@ -87,4 +88,11 @@ public interface DishMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 一次查询统计起售和停售的菜品数量
+     * @return
+     */
+    @Select("select ifnull(sum(status = 1), 0) as sold, ifnull(sum(status = 0), 0) as discontinued from dish")
+    DishOverViewVO countOverView();
 }
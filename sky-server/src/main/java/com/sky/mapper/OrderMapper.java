@@ -1,14 +1,24 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.CategorySalesDTO;
+import com.sky.dto.DailyGoodsSalesDTO;
+import com.sky.dto.DailyOrderStatDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.HourlyOrderStatDTO;
+import com.sky.dto.OrdersCursorQueryDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
+import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.OrderVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,6 +33,19 @@ public interface OrderMapper {
      */
     void insert(Orders orders);
 
+    /**
+     * 批量插入订单数据，回填自增id
+     * @param ordersList
+     */
+    void insertBatch(List<Orders> ordersList);
+
+    /**
+     * 查询已经存在的订单号
+     * @param numbers
+     * @return
+     */
+    List<String> getExistingNumbers(List<String> numbers);
+
     /**
      * 根据订单号查询订单
      * @param orderNumber
@@ -36,6 +59,41 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 条件更新订单：只更新状态仍为 fromStatus 的订单，状态字段必须设置
+     * @param orders 需要更新的字段
+     * @param ids 订单id
+     * @param fromStatus 原状态
+     * @return 实际更新的行数
+     */
+    int updateByIdsAndStatus(Orders orders, List<Long> ids, Integer fromStatus);
+
+    /**
+     * 条件修改支付状态：只修改订单状态为status、支付状态仍为fromPayStatus的订单
+     * @param id
+     * @param status
+     * @param fromPayStatus
+     * @param toPayStatus
+     * @return 实际更新的行数
+     */
+    @Update("update orders set pay_status = #{toPayStatus} where id = #{id} and status = #{status} and pay_status = #{fromPayStatus}")
+    int updatePayStatus(Long id, Integer status, Integer fromPayStatus, Integer toPayStatus);
+
+    /**
+     * 批量查询订单的id、状态和金额
+     * @param ids
+     * @return
+     */
+    List<Orders> getStatusByIds(List<Long> ids);
+
+    /**
+     * 查询指定订单中下单时间不早于orderTime的订单id和金额
+     * @param ids
+     * @param orderTime
+     * @return
+     */
+    List<Orders> getIdAndAmountByIdsAndOrderTimeGE(List<Long> ids, LocalDateTime orderTime);
+
     /**
      * 根据id查询订单详情
      * @param id
@@ -51,6 +109,20 @@ public interface OrderMapper {
      */
     Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 游标分页查询，按下单时间和id倒序，从游标位置之后取limit条
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    List<Orders> cursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
+    /**
+     * 统计分页查询条件下的订单总数
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    Long countPageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
+
     /**
      * 根据状态统计订单数量
      * @param status
@@ -67,6 +139,24 @@ public interface OrderMapper {
     @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
     List<Orders> getByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime);
 
+    /**
+     * 按下单时间顺序查询指定状态、下单时间早于指定时间的订单id和金额，最多返回limit条
+     * @param status
+     * @param orderTime
+     * @param limit
+     * @return
+     */
+    @Select("select id, amount from orders where status = #{status} and order_time < #{orderTime} order by order_time limit #{limit}")
+    List<Orders> getIdAndAmountByStatusAndOrderTimeLT(Integer status, LocalDateTime orderTime, int limit);
+
+    /**
+     * 查询指定状态的所有订单的id和下单时间
+     * @param status
+     * @return
+     */
+    @Select("select id, order_time from orders where status = #{status}")
+    List<Orders> getIdAndOrderTimeByStatus(Integer status);
+
     /**
      * 根据动态条件传入的map求日期订单营业总额
      * @param map
@@ -88,4 +178,77 @@ public interface OrderMapper {
      * @return
      */
     List<GoodsSalesDTO> getSalesTop10(LocalDateTime beginTime, LocalDateTime endTime);
+
+    /**
+     * 按下单日期分组统计订单总数、有效订单数和营业额
+     * @param map
+     * @return
+     */
+    List<DailyOrderStatDTO> countGroupByDate(Map map);
+
+    /**
+     * 按下单日期和小时分组统计订单总数、有效订单数和营业额
+     * @param map
+     * @return
+     */
+    List<HourlyOrderStatDTO> countGroupByDateHour(Map map);
+
+    /**
+     * 按下单日期和菜品/套餐分组统计已完成订单的销量，可按订单id或下单时间筛选
+     * 传入status时统计该状态的订单，用于已完成订单被取消后撤回销量
+     * @param map
+     * @return
+     */
+    List<DailyGoodsSalesDTO> sumGoodsSalesGroupByDate(Map map);
+
+    /**
+     * 按商品分类统计已完成订单的销量和销售额
+     * @param map
+     * @return
+     */
+    List<CategorySalesDTO> sumCategorySales(Map map);
+
+    /**
+     * 一次查询统计时间区间内的订单总数、有效订单数和营业额
+     * @param map
+     * @return
+     */
+    DailyOrderStatDTO sumStatByMap(Map map);
+
+    /**
+     * 一次查询统计各状态的订单数量
+     * @param map
+     * @return
+     */
+    OrderOverViewVO countOverViewByMap(Map map);
+
+    /**
+     * 计算时间区间内订单数据的版本，订单新增或状态变化（状态值只增不减）都会改变版本
+     * @param map
+     * @return
+     */
+    @Select("select concat(count(id), '-', ifnull(sum(status), 0), '-', ifnull(max(id), 0)) from orders " +
+            "where order_time between #{beginTime} and #{endTime}")
+    String getDataVersion(Map map);
+
+    /**
+     * 按下单时间流式查询订单，逐行回调，用于大数据量导出
+     * @param beginTime
+     * @param endTime
+     * @param resultHandler
+     */
+    @Select("select * from orders where order_time between #{beginTime} and #{endTime} order by order_time")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Orders.class)
+    void streamByOrderTime(LocalDateTime beginTime, LocalDateTime endTime, ResultHandler<Orders> resultHandler);
+
+    /**
+     * 按下单时间流式查询订单的下单时间、金额和状态，用于加载内存分析数据
+     * @param beginTime
+     * @param resultHandler
+     */
+    @Select("select order_time, amount, status from orders where order_time >= #{beginTime} order by order_time")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Orders.class)
+    void streamColumnsSince(LocalDateTime beginTime, ResultHandler<Orders> resultHandler);
 }
@@ -7,6 +7,7 @@ import com.sky.entity.Setmeal;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.DishVO;
+import com.sky.vo.SetmealOverViewVO;
 import com.sky.vo.SetmealVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
@@ -83,4 +84,11 @@ public interface SetmealMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 一次查询统计起售和停售的套餐数量
+     * @return
+     */
+    @Select("select ifnull(sum(status = 1), 0) as sold, ifnull(sum(status = 0), 0) as discontinued from setmeal")
+    SetmealOverViewVO countOverView();
 }
@@ -16,18 +16,60 @@ public interface ShoppingCartMapper {
     List<ShoppingCart> list(ShoppingCart shoppingCart);
 
     /**
-     * 根据购物车自己id修改商品数量
-     * @param shoppingCart
+     * 用户没有批量修改版本号时插入初始版本号-1
+     * @param userId
+     */
+    @Insert("insert ignore into shopping_cart_version (user_id, version) values (#{userId}, -1)")
+    void insertVersionIfAbsent(Long userId);
+
+    /**
+     * 版本号小于version时推进为version，并锁定该行直到事务结束
+     * @param userId
+     * @param version
+     * @return 修改的行数，版本号重复时为0
      */
-    @Update("update shopping_cart set number = #{number} where id = #{id}")
-    void updateNumberById(ShoppingCart shoppingCart);
+    @Update("update shopping_cart_version set version = #{version} where user_id = #{userId} and version < #{version}")
+    int advanceVersion(Long userId, long version);
 
     /**
-     * 向购物车中插入数据
+     * 购物车中已有的商品增加数量
+     * @param shoppingCart 使用userId、dishId、setmealId、dishFlavor确定商品
+     * @param count 增加的数量
+     * @return 修改的行数，购物车中没有该商品时为0
+     */
+    @Update("update shopping_cart set number = number + #{count} where user_id = #{shoppingCart.userId} " +
+            "and dish_id <=> #{shoppingCart.dishId} and setmeal_id <=> #{shoppingCart.setmealId} " +
+            "and dish_flavor <=> #{shoppingCart.dishFlavor}")
+    int increaseNumber(ShoppingCart shoppingCart, int count);
+
+    /**
+     * 购物车中数量大于count的商品减少数量
+     * @param shoppingCart 使用userId、dishId、setmealId、dishFlavor确定商品
+     * @param count 减少的数量
+     * @return 修改的行数，商品不存在或数量不大于count时为0
+     */
+    @Update("update shopping_cart set number = number - #{count} where user_id = #{shoppingCart.userId} " +
+            "and dish_id <=> #{shoppingCart.dishId} and setmeal_id <=> #{shoppingCart.setmealId} " +
+            "and dish_flavor <=> #{shoppingCart.dishFlavor} and number > #{count}")
+    int decreaseNumber(ShoppingCart shoppingCart, int count);
+
+    /**
+     * 删除购物车中数量不大于count的商品
+     * @param shoppingCart 使用userId、dishId、setmealId、dishFlavor确定商品
+     * @param count
+     */
+    @Delete("delete from shopping_cart where user_id = #{shoppingCart.userId} " +
+            "and dish_id <=> #{shoppingCart.dishId} and setmeal_id <=> #{shoppingCart.setmealId} " +
+            "and dish_flavor <=> #{shoppingCart.dishFlavor} and number <= #{count}")
+    void deleteIfNotMore(ShoppingCart shoppingCart, int count);
+
+    /**
+     * 向购物车中插入数据，同一商品已存在时累加数量（依赖唯一索引 uk_shopping_cart_user_item）
      * @param shoppingCart
      */
     @Insert("insert into shopping_cart(name, image, user_id, dish_id, setmeal_id, dish_flavor, number, amount, create_time) " +
-            "values (#{name},#{image},#{userId},#{dishId},#{setmealId},#{dishFlavor},#{number},#{amount},#{createTime})")
+            "values (#{name},#{image},#{userId},#{dishId},#{setmealId},#{dishFlavor},#{number},#{amount},#{createTime}) " +
+            "on duplicate key update number = number + values(number)")
     void insert(ShoppingCart shoppingCart);
 
     /**
@@ -38,16 +80,15 @@ public interface ShoppingCartMapper {
     void deleteByUserId(Long userId);
 
     /**
-     * 根据购物车id删除购物车中一个商品
-     * @param id
-     */
-    @Delete("delete from shopping_cart where id = #{id}")
-    void deleteById(Long id);
-
-    /**
-     * 批量插入购物车数据
+     * 批量插入购物车数据，同一商品已存在时累加数量
      *
      * @param shoppingCartList
      */
     void insertBatch(List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 根据id批量删除购物车数据
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
 }
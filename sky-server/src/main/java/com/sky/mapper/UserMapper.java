@@ -1,11 +1,13 @@
 package com.sky.mapper;
 
 import com.sky.annotation.AutoFill;
+import com.sky.dto.DailyUserStatDTO;
 import com.sky.entity.User;
 import com.sky.enumeration.OperationType;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -36,4 +38,11 @@ public interface UserMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 按注册日期分组统计新增用户数量
+     * @param map
+     * @return
+     */
+    List<DailyUserStatDTO> countGroupByDate(Map map);
 }
@@ -0,0 +1,69 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+import com.sky.event.OrderRefundEvent;
+import com.sky.mapper.OrderMapper;
+import com.sky.utils.WeChatPayUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+
+/**
+ * 取消订单后的退款：取消订单的事务把订单状态和支付状态（改为退款）一起提交后，再调用微信支付退款接口，
+ * 调用退款接口期间不持有订单的行锁，事务回滚时也不会发起退款。
+ * 退款失败时把支付状态恢复为已支付，已取消且已支付的订单需要重新发起退款
+ */
+@Component
+@Slf4j
+public class OrderRefundHandler {
+
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //提交后的回调中原事务的连接可能仍然绑定在线程上，补偿更新需要在新事务中执行
+    private TransactionTemplate requiresNewTemplate;
+
+    @PostConstruct
+    public void init() {
+        requiresNewTemplate = new TransactionTemplate(transactionManager);
+        requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * 取消订单的事务提交后发起退款
+     * @param event
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderRefund(OrderRefundEvent event) {
+        try {
+            String refund = weChatPayUtil.refund(
+                    event.getNumber(), //商户订单号
+                    event.getNumber(), //商户退款单号
+                    new BigDecimal(0.01),//退款金额，单位 元
+                    new BigDecimal(0.01));//原订单金额
+            log.info("申请退款：{}", refund);
+        } catch (Exception e) {
+            log.error("订单退款失败，支付状态恢复为已支付，需要重新退款：{}", event, e);
+            try {
+                requiresNewTemplate.executeWithoutResult(status ->
+                        orderMapper.updatePayStatus(event.getOrderId(), Orders.CANCELLED, Orders.REFUND, Orders.PAID));
+            } catch (Exception ex) {
+                log.error("恢复订单支付状态失败：{}", event, ex);
+            }
+        }
+    }
+}
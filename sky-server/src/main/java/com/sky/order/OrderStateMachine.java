@@ -0,0 +1,233 @@
+package com.sky.order;
+
+import com.sky.constant.MessageConstant;
+import com.sky.context.LeaseContext;
+import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangeEvent;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.vo.OrderBatchResultVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 订单状态机：按 OrderTransition 的定义修改订单状态
+ * 每次修改都是一条带原状态条件的 update 语句（where id = ? and status = ?），并发修改同一订单时只有一个能成功，
+ * 修改成功后发布订单状态变化事件
+ */
+@Component
+@Slf4j
+public class OrderStateMachine {
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * 对已查询出的订单执行状态流转，订单不存在、状态不允许或已被并发修改时抛出业务异常
+     * @param transition
+     * @param ordersDB 数据库中的订单
+     * @param changes 除状态外需要一并更新的字段，可以为null
+     */
+    public void fire(OrderTransition transition, Orders ordersDB, Orders changes) {
+        if (!tryFire(transition, ordersDB, changes)) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+    }
+
+    /**
+     * 对已查询出的订单执行状态流转
+     * @param transition
+     * @param ordersDB 数据库中的订单
+     * @param changes 除状态外需要一并更新的字段，可以为null
+     * @return 订单不存在、状态不允许或已被并发修改时返回false
+     */
+    public boolean tryFire(OrderTransition transition, Orders ordersDB, Orders changes) {
+        if (ordersDB == null || !transition.allows(ordersDB.getStatus())) {
+            return false;
+        }
+        List<Long> ids = Collections.singletonList(ordersDB.getId());
+        if (update(transition, ids, ordersDB.getStatus(), changes) == 0) {
+            return false;
+        }
+        publishStatusChange(ids, ordersDB.getStatus(), transition.getToStatus(), ordersDB.getAmount());
+        return true;
+    }
+
+    /**
+     * 不查询订单，直接按id执行状态流转，只适用于只有一个原状态的流转
+     * @param transition
+     * @param id
+     * @param changes 除状态外需要一并更新的字段，可以为null
+     */
+    public void fire(OrderTransition transition, Long id, Orders changes) {
+        Integer fromStatus = singleFromStatus(transition);
+        List<Long> ids = Collections.singletonList(id);
+        if (update(transition, ids, fromStatus, changes) == 0) {
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        publishStatusChange(ids, fromStatus, transition.getToStatus(), null);
+    }
+
+    /**
+     * 批量执行状态流转，按订单当前状态分组，每组一条条件更新语句
+     * @param transition
+     * @param ids
+     * @param changes 除状态外需要一并更新的字段，可以为null
+     * @return 成功和失败的订单id
+     */
+    public OrderBatchResultVO fireAll(OrderTransition transition, List<Long> ids, Orders changes) {
+        List<Long> successIds = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return OrderBatchResultVO.builder().successIds(successIds).failedIds(failedIds).build();
+        }
+
+        //按当前状态分组，不允许流转的订单直接失败
+        Map<Integer, List<Orders>> groups = new LinkedHashMap<>();
+        Set<Long> found = new HashSet<>();
+        for (Orders orders : orderMapper.getStatusByIds(ids)) {
+            found.add(orders.getId());
+            if (transition.allows(orders.getStatus())) {
+                groups.computeIfAbsent(orders.getStatus(), k -> new ArrayList<>()).add(orders);
+            } else {
+                failedIds.add(orders.getId());
+            }
+        }
+        for (Long id : new LinkedHashSet<Long>(ids)) {
+            if (!found.contains(id)) {
+                failedIds.add(id);
+            }
+        }
+
+        for (Map.Entry<Integer, List<Orders>> entry : groups.entrySet()) {
+            successIds.addAll(fireGroup(transition, entry.getKey(), entry.getValue(), changes, failedIds));
+        }
+
+        log.info("批量订单状态流转：{}，成功：{}，失败：{}", transition, successIds.size(), failedIds.size());
+        return OrderBatchResultVO.builder().successIds(successIds).failedIds(failedIds).build();
+    }
+
+    /**
+     * 分批处理下单时间早于指定时间、仍处于原状态的订单，每批只查询id和金额，不把全部订单加载到内存
+     * 只适用于只有一个原状态的流转；在定时任务租约内执行时，租约丢失后不再处理剩余批次
+     * @param transition
+     * @param orderTime 下单时间上限（不含）
+     * @param changes 除状态外需要一并更新的字段，可以为null
+     * @param chunkSize 每批处理的订单数
+     * @return 实际修改的订单数
+     */
+    public int fireByOrderTimeBefore(OrderTransition transition, LocalDateTime orderTime, Orders changes, int chunkSize) {
+        Integer fromStatus = singleFromStatus(transition);
+        int total = 0;
+        while (true) {
+            if (LeaseContext.isLeaseLost()) {
+                log.warn("定时任务租约已丢失，停止处理剩余订单：{}，已处理：{}", transition, total);
+                break;
+            }
+            List<Orders> chunk = orderMapper.getIdAndAmountByStatusAndOrderTimeLT(fromStatus, orderTime, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            total += fireGroup(transition, fromStatus, chunk, changes, new ArrayList<>()).size();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 对状态相同的一组订单执行一条条件更新语句，发布事件并返回实际修改的订单id
+     * @param transition
+     * @param fromStatus
+     * @param candidates
+     * @param changes
+     * @param failedIds 没有修改成功的订单id加入此列表
+     * @return
+     */
+    private List<Long> fireGroup(OrderTransition transition, Integer fromStatus, List<Orders> candidates,
+                                 Orders changes, List<Long> failedIds) {
+        List<Long> candidateIds = new ArrayList<>(candidates.size());
+        for (Orders orders : candidates) {
+            candidateIds.add(orders.getId());
+        }
+
+        int rows = update(transition, candidateIds, fromStatus, changes);
+        List<Orders> updated = candidates;
+        if (rows < candidates.size()) {
+            //部分订单在查询后被并发修改，重新查询确认哪些订单由本次更新完成了流转
+            updated = new ArrayList<>(rows);
+            Set<Long> changed = new HashSet<>();
+            for (Orders orders : orderMapper.getStatusByIds(candidateIds)) {
+                if (Objects.equals(orders.getStatus(), transition.getToStatus())) {
+                    changed.add(orders.getId());
+                }
+            }
+            for (Orders orders : candidates) {
+                if (changed.contains(orders.getId()) && updated.size() < rows) {
+                    updated.add(orders);
+                } else {
+                    failedIds.add(orders.getId());
+                }
+            }
+        }
+
+        List<Long> updatedIds = new ArrayList<>(updated.size());
+        if (updated.isEmpty()) {
+            return updatedIds;
+        }
+        BigDecimal amount = BigDecimal.ZERO;
+        for (Orders orders : updated) {
+            updatedIds.add(orders.getId());
+            if (orders.getAmount() != null) {
+                amount = amount.add(orders.getAmount());
+            }
+        }
+        publishStatusChange(updatedIds, fromStatus, transition.getToStatus(), amount);
+        return updatedIds;
+    }
+
+    private int update(OrderTransition transition, List<Long> ids, Integer fromStatus, Orders changes) {
+        Orders orders = new Orders();
+        if (changes != null) {
+            orders.setCancelReason(changes.getCancelReason());
+            orders.setRejectionReason(changes.getRejectionReason());
+            orders.setCancelTime(changes.getCancelTime());
+            orders.setPayStatus(changes.getPayStatus());
+            orders.setPayMethod(changes.getPayMethod());
+            orders.setCheckoutTime(changes.getCheckoutTime());
+            orders.setDeliveryTime(changes.getDeliveryTime());
+        }
+        orders.setStatus(transition.getToStatus());
+        return orderMapper.updateByIdsAndStatus(orders, ids, fromStatus);
+    }
+
+    private Integer singleFromStatus(OrderTransition transition) {
+        if (transition.getFromStatuses().size() != 1) {
+            throw new IllegalArgumentException(transition + " 有多个原状态，需要先查询订单");
+        }
+        return transition.getFromStatuses().get(0);
+    }
+
+    private void publishStatusChange(List<Long> orderIds, Integer fromStatus, Integer toStatus, BigDecimal amount) {
+        applicationEventPublisher.publishEvent(new OrderStatusChangeEvent(orderIds, fromStatus, toStatus, amount));
+    }
+
+}
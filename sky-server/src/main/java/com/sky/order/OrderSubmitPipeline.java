@@ -0,0 +1,527 @@
+package com.sky.order;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.sky.cart.CartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.event.OrderStatusChangeEvent;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import com.sky.vo.OrderSubmitVO;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步下单流水线（sky.order.pipeline-enabled=true 时启用）
+ * 下单请求校验通过后先追加写入本地日志文件，再放入有界队列，立即返回订单号；
+ * 后台写入线程批量取出订单，在一个事务中多行插入订单和订单明细并删除购物车数据，提交后在日志中记录完成标记；
+ * 写入失败的订单不记录完成标记，按指数退避重试。
+ * 应用重启时由写入线程重放日志中未完成的订单，保证已经返回给用户的订单不会丢失；
+ * 重放时数据库不可用不影响应用启动，订单保留在日志中直到写入成功
+ */
+@Component
+@Slf4j
+public class OrderSubmitPipeline {
+
+    private static final String JOURNAL_FILE = "order-submit.journal";
+
+    //日志记录类型：待写入的订单
+    private static final String TYPE_SUBMIT = "S";
+    //日志记录类型：已写入数据库的订单号
+    private static final String TYPE_COMMIT = "C";
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+
+    //写入失败等待重试的订单，只由写入线程访问
+    private final List<Submission> retries = new ArrayList<>();
+
+    //启动时从日志中读取、还没有确认是否已写入数据库的订单，只由写入线程访问
+    private final List<Submission> recovered = new ArrayList<>();
+
+    //正在提交中的用户，同一用户上一单写入数据库前不能重复下单
+    private final Map<Long, String> pendingUsers = new ConcurrentHashMap<>();
+
+    //已写入日志但还没有写入数据库的订单数量，为0时可以清空日志
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Object journalLock = new Object();
+
+    private Semaphore permits;
+
+    private FileChannel journal;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!orderProperties.isPipelineEnabled()) {
+            return;
+        }
+        Path dir = Paths.get(orderProperties.getPipelineJournalDir());
+        Files.createDirectories(dir);
+        Path path = dir.resolve(JOURNAL_FILE);
+
+        //这里只读取日志，不访问数据库；未完成的订单由写入线程重放
+        List<Submission> pending = readJournal(path);
+        rewriteJournal(path, pending);
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        //未完成的订单占用队列容量，用户在订单写入前不能再次下单
+        permits = new Semaphore(orderProperties.getPipelineQueueCapacity() - pending.size());
+        for (Submission submission : pending) {
+            pendingUsers.put(submission.getOrders().getUserId(), submission.getOrders().getNumber());
+        }
+        inFlight.set(pending.size());
+        recovered.addAll(pending);
+
+        running = true;
+        writer = new Thread(this::runWriter, "order-submit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("异步下单流水线已启动，日志文件：{}", path);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (writer.isAlive()) {
+            //仍在写入数据库或日志，中断后再等待；中断可能使日志记录不完整，重放时会忽略不完整的记录并按订单号跳过已写入的订单
+            writer.interrupt();
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        //日志由写入线程退出时关闭，未写入数据库的订单保留在日志中，下次启动时重放
+        if (writer.isAlive()) {
+            log.warn("异步下单写入线程未能及时停止，未写入的订单数：{}", inFlight.get());
+        } else {
+            log.info("异步下单流水线已停止，未写入的订单数：{}", inFlight.get());
+        }
+    }
+
+    /**
+     * 提交订单，订单写入日志并进入队列后立即返回
+     * @param orders 订单，id为空
+     * @param orderDetailList 订单明细，orderId为空
+     * @param cartItems 下单后需要删除的购物车数据
+     * @return 订单号等信息，订单id在写入数据库前为空
+     */
+    public OrderSubmitVO submit(Orders orders, List<OrderDetail> orderDetailList, List<ShoppingCart> cartItems) {
+        Long userId = orders.getUserId();
+        if (pendingUsers.putIfAbsent(userId, orders.getNumber()) != null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMIT_PENDING);
+        }
+        //队列已满时拒绝下单，避免请求无限堆积
+        if (!permits.tryAcquire()) {
+            pendingUsers.remove(userId);
+            throw new OrderBusinessException(MessageConstant.ORDER_BUSY);
+        }
+
+        Submission submission = new Submission();
+        submission.setOrders(orders);
+        submission.setOrderDetails(orderDetailList);
+        submission.setCartItems(cartItems);
+        try {
+            synchronized (journalLock) {
+                inFlight.incrementAndGet();
+                append(TYPE_SUBMIT, submission);
+            }
+        } catch (IOException e) {
+            inFlight.decrementAndGet();
+            permits.release();
+            pendingUsers.remove(userId);
+            log.error("下单日志写入失败，订单号：{}", orders.getNumber(), e);
+            throw new OrderBusinessException(MessageConstant.ORDER_BUSY);
+        }
+        queue.add(submission);
+
+        return OrderSubmitVO.builder()
+                .orderTime(orders.getOrderTime())
+                .orderNumber(orders.getNumber())
+                .orderAmount(orders.getAmount())
+                .build();
+    }
+
+    /**
+     * 后台写入线程：先重放启动时恢复的订单，再每次最多取出 pipelineBatchSize 个订单批量写入，写入失败的订单延迟后重试
+     * 退出时由写入线程关闭日志，停止过程中不会关闭正在写入的日志文件
+     */
+    private void runWriter() {
+        try {
+            if (recover()) {
+                writeLoop();
+            }
+        } finally {
+            synchronized (journalLock) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    log.error("关闭下单日志失败", e);
+                }
+            }
+        }
+    }
+
+    private void writeLoop() {
+        int batchSize = orderProperties.getPipelineBatchSize();
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while ((running || !queue.isEmpty()) && !Thread.currentThread().isInterrupted()) {
+            try {
+                //到期的重试订单优先写入
+                long now = System.currentTimeMillis();
+                long nextRetryAt = Long.MAX_VALUE;
+                for (Iterator<Submission> it = retries.iterator(); it.hasNext(); ) {
+                    Submission submission = it.next();
+                    if (submission.getRetryAt() <= now && batch.size() < batchSize) {
+                        batch.add(submission);
+                        it.remove();
+                    } else {
+                        nextRetryAt = Math.min(nextRetryAt, submission.getRetryAt());
+                    }
+                }
+                if (batch.isEmpty()) {
+                    long wait = Math.max(1, Math.min(500, nextRetryAt - now));
+                    Submission first = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                persist(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                //日志写入失败等异常，订单仍保留在日志中，重启后重放
+                log.error("异步下单批量写入异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        //停止时还没有写入的重试订单保留在日志中，下次启动时重放
+        if (!retries.isEmpty()) {
+            log.warn("异步下单流水线停止时仍有{}个订单等待重试", retries.size());
+        }
+    }
+
+    /**
+     * 确认启动时恢复的订单是否已经写入数据库：已写入的只记录完成标记，其余订单交给重试列表立即写入
+     * 查询数据库失败时按指数退避重试，停止或中断时返回false，订单保留在日志中
+     * @return
+     */
+    private boolean recover() {
+        int attempts = 0;
+        while (!recovered.isEmpty()) {
+            if (!running) {
+                return false;
+            }
+            try {
+                List<String> numbers = new ArrayList<>(recovered.size());
+                for (Submission submission : recovered) {
+                    numbers.add(submission.getOrders().getNumber());
+                }
+                Set<String> existing = new HashSet<>(orderMapper.getExistingNumbers(numbers));
+
+                List<Submission> written = new ArrayList<>();
+                for (Submission submission : recovered) {
+                    if (existing.contains(submission.getOrders().getNumber())) {
+                        written.add(submission);
+                    } else {
+                        retries.add(submission);
+                    }
+                }
+                log.info("重放下单日志，未完成订单数：{}，需要写入：{}", recovered.size(), recovered.size() - written.size());
+                recovered.clear();
+                if (!written.isEmpty()) {
+                    complete(written);
+                }
+            } catch (Exception e) {
+                attempts++;
+                long delay = retryDelay(attempts);
+                log.error("重放下单日志失败，{}毫秒后第{}次重试，未完成订单数：{}", delay, attempts, recovered.size(), e);
+                long deadline = System.currentTimeMillis() + delay;
+                try {
+                    while (running && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(Math.min(500, Math.max(1, deadline - System.currentTimeMillis())));
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 批量写入订单，整批失败时逐单重试，避免一个异常订单影响同批次的其他订单
+     * 仍然失败的订单不记录完成标记，保留在日志中并延迟后重试，用户在此期间不能再次下单
+     * @param batch
+     */
+    private void persist(List<Submission> batch) throws IOException {
+        List<Submission> written;
+        try {
+            insert(batch);
+            written = batch;
+        } catch (Exception e) {
+            log.warn("订单批量写入失败，逐单重试，批次大小：{}", batch.size(), e);
+            written = new ArrayList<>();
+            for (Submission submission : batch) {
+                try {
+                    insert(Collections.singletonList(submission));
+                    written.add(submission);
+                } catch (Exception ex) {
+                    scheduleRetry(submission, ex);
+                }
+            }
+        }
+        if (written.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<Long> orderIds = new ArrayList<>(written.size());
+            BigDecimal amount = BigDecimal.ZERO;
+            for (Submission submission : written) {
+                orderIds.add(submission.getOrders().getId());
+                amount = amount.add(submission.getOrders().getAmount());
+            }
+            applicationEventPublisher.publishEvent(
+                    new OrderStatusChangeEvent(orderIds, null, Orders.PENDING_PAYMENT, amount));
+        } finally {
+            complete(written);
+        }
+    }
+
+    /**
+     * 在日志中记录已写入数据库的订单，并释放队列容量和用户的下单限制
+     * 完成标记写入失败时，重放会按订单号跳过已经写入数据库的订单
+     * @param written
+     */
+    private void complete(List<Submission> written) throws IOException {
+        try {
+            List<String> numbers = new ArrayList<>(written.size());
+            for (Submission submission : written) {
+                numbers.add(submission.getOrders().getNumber());
+            }
+            synchronized (journalLock) {
+                try {
+                    append(TYPE_COMMIT, numbers);
+                } finally {
+                    if (inFlight.addAndGet(-written.size()) == 0) {
+                        journal.truncate(0);
+                    }
+                }
+            }
+        } finally {
+            for (Submission submission : written) {
+                pendingUsers.remove(submission.getOrders().getUserId(), submission.getOrders().getNumber());
+            }
+            permits.release(written.size());
+        }
+    }
+
+    /**
+     * 写入失败的订单按指数退避延迟重试，最长间隔 pipelineRetryMaxMillis
+     * @param submission
+     * @param e
+     */
+    private void scheduleRetry(Submission submission, Exception e) {
+        int attempts = submission.getAttempts() + 1;
+        long delay = retryDelay(attempts);
+        submission.setAttempts(attempts);
+        submission.setRetryAt(System.currentTimeMillis() + delay);
+        retries.add(submission);
+        log.error("订单写入失败，{}毫秒后第{}次重试，订单号：{}", delay, attempts, submission.getOrders().getNumber(), e);
+    }
+
+    private long retryDelay(int attempts) {
+        return Math.min(orderProperties.getPipelineRetryMaxMillis(),
+                orderProperties.getPipelineRetryInitialMillis() << Math.min(attempts - 1, 20));
+    }
+
+    /**
+     * 在一个事务中多行插入订单、订单明细，并删除对应的购物车数据
+     * @param batch
+     */
+    private void insert(List<Submission> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Orders> ordersList = new ArrayList<>(batch.size());
+            for (Submission submission : batch) {
+                ordersList.add(submission.getOrders());
+            }
+            orderMapper.insertBatch(ordersList);
+
+            List<OrderDetail> orderDetailList = new ArrayList<>();
+            List<ShoppingCart> cartItems = new ArrayList<>();
+            for (Submission submission : batch) {
+                for (OrderDetail orderDetail : submission.getOrderDetails()) {
+                    orderDetail.setOrderId(submission.getOrders().getId());
+                    orderDetailList.add(orderDetail);
+                }
+                cartItems.addAll(submission.getCartItems());
+            }
+            orderDetailMapper.insertBatch(orderDetailList);
+            if (!cartItems.isEmpty()) {
+                cartStore.remove(cartItems);
+            }
+        });
+    }
+
+    /**
+     * 读取日志中没有完成标记的订单
+     * @param path
+     * @return
+     */
+    private List<Submission> readJournal(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return Collections.emptyList();
+        }
+        Map<String, Submission> pending = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject record;
+                try {
+                    record = JSON.parseObject(line);
+                } catch (Exception e) {
+                    //崩溃时最后一行可能没有写完整，对应的下单请求没有返回成功，直接忽略
+                    log.warn("忽略不完整的下单日志记录：{}", line);
+                    continue;
+                }
+                if (TYPE_SUBMIT.equals(record.getString("type"))) {
+                    Submission submission = record.getObject("data", Submission.class);
+                    pending.put(submission.getOrders().getNumber(), submission);
+                } else {
+                    for (String number : record.getJSONArray("data").toJavaList(String.class)) {
+                        pending.remove(number);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * 只保留未完成订单重写日志，先写临时文件再替换，去掉已完成的记录和不完整的最后一行
+     * @param path
+     * @param pending
+     */
+    private void rewriteJournal(Path path, List<Submission> pending) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Path temp = path.resolveSibling(JOURNAL_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Submission submission : pending) {
+                write(channel, TYPE_SUBMIT, submission);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void append(String type, Object data) throws IOException {
+        write(journal, type, data);
+        journal.force(false);
+    }
+
+    private void write(FileChannel channel, String type, Object data) throws IOException {
+        JSONObject record = new JSONObject();
+        record.put("type", type);
+        record.put("data", data);
+        byte[] bytes = (record.toJSONString() + "\n").getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 队列和日志中保存的一次下单请求
+     */
+    @Data
+    public static class Submission {
+
+        private Orders orders;
+
+        private List<OrderDetail> orderDetails;
+
+        private List<ShoppingCart> cartItems;
+
+        //写入失败的次数，不写入日志
+        @JSONField(serialize = false, deserialize = false)
+        private int attempts;
+
+        //下次重试的时间（毫秒），不写入日志
+        @JSONField(serialize = false, deserialize = false)
+        private long retryAt;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.sky.order;
+
+import com.sky.entity.Orders;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单状态流转定义：每种操作允许的原状态和目标状态
+ * 订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+ */
+public enum OrderTransition {
+
+    //支付成功
+    PAY(Orders.TO_BE_CONFIRMED, Orders.PENDING_PAYMENT),
+    //商家接单
+    CONFIRM(Orders.CONFIRMED, Orders.TO_BE_CONFIRMED),
+    //商家拒单
+    REJECT(Orders.CANCELLED, Orders.TO_BE_CONFIRMED),
+    //用户取消，只有待付款和待接单的订单可以取消
+    USER_CANCEL(Orders.CANCELLED, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED),
+    //商家取消
+    ADMIN_CANCEL(Orders.CANCELLED, Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED,
+            Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED),
+    //超时未支付自动取消
+    TIMEOUT_CANCEL(Orders.CANCELLED, Orders.PENDING_PAYMENT),
+    //派送
+    DELIVER(Orders.DELIVERY_IN_PROGRESS, Orders.CONFIRMED),
+    //完成
+    COMPLETE(Orders.COMPLETED, Orders.DELIVERY_IN_PROGRESS);
+
+    private final Integer toStatus;
+
+    private final List<Integer> fromStatuses;
+
+    OrderTransition(Integer toStatus, Integer... fromStatuses) {
+        this.toStatus = toStatus;
+        this.fromStatuses = Collections.unmodifiableList(Arrays.asList(fromStatuses));
+    }
+
+    public Integer getToStatus() {
+        return toStatus;
+    }
+
+    public List<Integer> getFromStatuses() {
+        return fromStatuses;
+    }
+
+    /**
+     * 是否允许从指定状态流转
+     * @param status
+     * @return
+     */
+    public boolean allows(Integer status) {
+        return fromStatuses.contains(status);
+    }
+}
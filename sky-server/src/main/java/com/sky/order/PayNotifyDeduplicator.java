@@ -0,0 +1,80 @@
+package com.sky.order;
+
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 微信支付回调去重：按微信支付交易号记录已经处理成功的回调
+ * 先查本机的已处理交易号缓存，再查Redis中其他实例记录的交易号，都没有命中时才执行业务处理；
+ * 并发到达的重复回调由订单状态的条件更新保证只处理一次
+ */
+@Component
+@Slf4j
+public class PayNotifyDeduplicator {
+
+    private static final String KEY_PREFIX = "pay:notified:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    private final Map<String, Boolean> processed = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > orderProperties.getPayNotifyCacheSize();
+                }
+            });
+
+    /**
+     * 交易号对应的回调是否已经处理过
+     * @param transactionId 微信支付交易号
+     * @return
+     */
+    public boolean isProcessed(String transactionId) {
+        if (transactionId == null) {
+            return false;
+        }
+        if (processed.containsKey(transactionId)) {
+            return true;
+        }
+        try {
+            if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(KEY_PREFIX + transactionId))) {
+                processed.put(transactionId, Boolean.TRUE);
+                return true;
+            }
+        } catch (Exception e) {
+            //Redis不可用时继续处理，由订单状态的条件更新保证幂等
+            log.error("查询支付回调处理记录失败：{}", transactionId, e);
+        }
+        return false;
+    }
+
+    /**
+     * 记录交易号对应的回调已经处理成功
+     * @param transactionId 微信支付交易号
+     */
+    public void markProcessed(String transactionId) {
+        if (transactionId == null) {
+            return;
+        }
+        processed.put(transactionId, Boolean.TRUE);
+        try {
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + transactionId, "1",
+                    Duration.ofHours(orderProperties.getPayNotifyTtlHours()));
+        } catch (Exception e) {
+            log.error("保存支付回调处理记录失败：{}", transactionId, e);
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.sky.order;
+
+import com.sky.annotation.ScheduledLease;
+import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangeEvent;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 订单支付超时调度：基于Redis有序集合的延时队列
+ * 新订单创建后以支付截止时间为分值加入有序集合 order:pay_deadline，订单支付或取消后移除；
+ * 每秒取出已到期的订单，通过 ZREM 抢占后只取消这些订单，多实例部署时每个订单只会被一个实例处理。
+ * 应用启动时从数据库恢复所有待付款订单，Redis数据丢失、登记失败或停机期间到期的订单在启动后立即处理，
+ * 运行期间不再定期全表扫描订单
+ */
+@Component
+@Slf4j
+public class PaymentTimeoutScheduler {
+
+    private static final String KEY = "order:pay_deadline";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    @Autowired
+    private OrderProperties orderProperties;
+
+    /**
+     * 新订单登记支付截止时间，订单离开待付款状态后移除
+     * 在订单事务提交后执行，失败只记录日志，订单会在下次启动恢复时重新登记
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChange(OrderStatusChangeEvent event) {
+        if (event.getOrderIds() == null || event.getOrderIds().isEmpty()) {
+            return;
+        }
+        try {
+            if (event.getFromStatus() == null && Orders.PENDING_PAYMENT.equals(event.getToStatus())) {
+                long deadline = System.currentTimeMillis() + orderProperties.getPaymentTimeoutMinutes() * 60_000L;
+                Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                for (Long orderId : event.getOrderIds()) {
+                    tuples.add(new DefaultTypedTuple<>(orderId.toString(), (double) deadline));
+                }
+                stringRedisTemplate.opsForZSet().add(KEY, tuples);
+            } else if (Orders.PENDING_PAYMENT.equals(event.getFromStatus())) {
+                Object[] members = event.getOrderIds().stream().map(String::valueOf).toArray();
+                stringRedisTemplate.opsForZSet().remove(KEY, members);
+            }
+        } catch (Exception e) {
+            log.error("订单支付截止时间登记失败：{}", event, e);
+        }
+    }
+
+    /**
+     * 启动时从数据库恢复待付款订单的支付截止时间
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        List<Orders> ordersList = orderMapper.getIdAndOrderTimeByStatus(Orders.PENDING_PAYMENT);
+        if (ordersList.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        for (Orders orders : ordersList) {
+            tuples.add(new DefaultTypedTuple<>(orders.getId().toString(), (double) deadlineOf(orders.getOrderTime())));
+        }
+        stringRedisTemplate.opsForZSet().add(KEY, tuples);
+        log.info("恢复待付款订单支付截止时间：{}", ordersList.size());
+    }
+
+    /**
+     * 取消已到支付截止时间的订单
+     */
+    @Scheduled(fixedDelayString = "${sky.order.payment-timeout-poll-millis:1000}")
+    @ScheduledLease(value = "paymentTimeoutScheduler:expire", leaseMillis = 30000)
+    public void expire() {
+        try {
+            int batchSize = orderProperties.getTaskChunkSize();
+            while (true) {
+                Set<String> members = stringRedisTemplate.opsForZSet()
+                        .rangeByScore(KEY, 0, System.currentTimeMillis(), 0, batchSize);
+                if (members == null || members.isEmpty()) {
+                    return;
+                }
+
+                //ZREM 成功的实例负责取消该订单
+                List<Long> ids = new ArrayList<>(members.size());
+                for (String member : members) {
+                    Long removed = stringRedisTemplate.opsForZSet().remove(KEY, member);
+                    if (removed != null && removed > 0) {
+                        ids.add(Long.valueOf(member));
+                    }
+                }
+
+                //已支付或已取消的订单由状态机过滤
+                if (!ids.isEmpty()) {
+                    try {
+                        orderStateMachine.fireAll(OrderTransition.TIMEOUT_CANCEL, ids, timeoutChanges());
+                    } catch (Exception e) {
+                        //取消失败时放回队列，下次检查时重试
+                        log.error("取消支付超时订单失败，放回队列：{}", ids, e);
+                        requeue(ids);
+                        return;
+                    }
+                }
+                if (members.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("处理支付超时订单失败", e);
+        }
+    }
+
+    private void requeue(List<Long> ids) {
+        try {
+            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+            double now = System.currentTimeMillis();
+            for (Long id : ids) {
+                tuples.add(new DefaultTypedTuple<>(id.toString(), now));
+            }
+            stringRedisTemplate.opsForZSet().add(KEY, tuples);
+        } catch (Exception e) {
+            //订单在下次启动恢复时重新登记
+            log.error("支付超时订单放回队列失败：{}", ids, e);
+        }
+    }
+
+    private static Orders timeoutChanges() {
+        Orders orders = new Orders();
+        orders.setCancelReason("订单超时，自动取消。");
+        orders.setCancelTime(LocalDateTime.now());
+        return orders;
+    }
+
+    private long deadlineOf(LocalDateTime orderTime) {
+        return orderTime.plusMinutes(orderProperties.getPaymentTimeoutMinutes())
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.sky.service;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.event.OrderStatusChangeEvent;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyStatsService {
+
+    /**
+     * 订单状态变化时增量维护每日汇总数据
+     * @param event
+     */
+    void onOrderStatusChange(OrderStatusChangeEvent event);
+
+    /**
+     * 新用户注册时累加当天新增用户数
+     * @param registerDate
+     */
+    void increaseNewUsers(LocalDate registerDate);
+
+    /**
+     * 根据订单表和用户表重新计算日期区间内的每日汇总数据
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询日期区间内的每日汇总数据，没有数据的日期补零
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> list(LocalDate begin, LocalDate end);
+}
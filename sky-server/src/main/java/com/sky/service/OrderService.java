@@ -1,12 +1,16 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
+import com.sky.vo.OrderBatchResultVO;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
 
+import java.util.List;
+
 public interface OrderService {
 
     /**
@@ -46,6 +50,16 @@ public interface OrderService {
      */
     PageResult pageQuery4User(int page, int pageSize, Integer status);
 
+    /**
+     * 用户端游标分页查询历史订单
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param pageSize
+     * @param status
+     * @param withTotal 是否统计总数
+     * @return
+     */
+    CursorPageResult cursorQuery4User(String cursor, int pageSize, Integer status, boolean withTotal);
+
     /**
      * 用户通过订单id取消订单
      * @param id
@@ -66,6 +80,13 @@ public interface OrderService {
      */
     PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 游标条件搜索订单
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    CursorPageResult conditionSearchByCursor(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
     /**
      * 各个状态的订单数量统计
      * @return
@@ -107,6 +128,30 @@ public interface OrderService {
      */
     void complete(Long id);
 
+    /**
+     * 批量接单
+     *
+     * @param ids
+     * @return
+     */
+    OrderBatchResultVO batchConfirm(List<Long> ids);
+
+    /**
+     * 批量派送
+     *
+     * @param ids
+     * @return
+     */
+    OrderBatchResultVO batchDelivery(List<Long> ids);
+
+    /**
+     * 批量完成
+     *
+     * @param ids
+     * @return
+     */
+    OrderBatchResultVO batchComplete(List<Long> ids);
+
     /**
      * 客户催单
      * @param id
@@ -0,0 +1,32 @@
+package com.sky.service;
+
+import com.sky.vo.ReportExportJobVO;
+
+import java.io.File;
+import java.time.LocalDate;
+
+public interface ReportExportService {
+
+    /**
+     * 提交异步导出任务，相同区间且数据未变化时直接使用已缓存的导出文件
+     * @param begin
+     * @param end
+     * @param detail
+     * @return
+     */
+    ReportExportJobVO submit(LocalDate begin, LocalDate end, boolean detail);
+
+    /**
+     * 查询导出任务状态和进度
+     * @param jobId
+     * @return
+     */
+    ReportExportJobVO getJob(String jobId);
+
+    /**
+     * 获取已完成任务的导出文件
+     * @param jobId
+     * @return
+     */
+    File getArtifact(String jobId);
+}
@@ -1,11 +1,16 @@
 package com.sky.service;
 
+import com.sky.vo.CategorySalesReportVO;
+import com.sky.vo.HeatmapReportVO;
+import com.sky.vo.HourlyReportVO;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
 import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
+import java.util.function.IntConsumer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -43,9 +48,51 @@ public interface ReportService {
      */
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
 
+    /**
+     * 统计指定时间区间内各分类的销量和销售额
+     * @param begin
+     * @param end
+     * @return
+     */
+    CategorySalesReportVO getCategorySales(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计指定时间区间内每个小时的订单数和营业额
+     * @param begin
+     * @param end
+     * @return
+     */
+    HourlyReportVO getHourlyStatistics(LocalDate begin, LocalDate end);
+
+    /**
+     * 统计指定时间区间内星期几×小时的订单数和营业额热力图
+     * @param begin
+     * @param end
+     * @return
+     */
+    HeatmapReportVO getHeatmap(LocalDate begin, LocalDate end);
+
     /**
      * 导出运营数据
      * @param httpServletResponse
      */
     void exportBusinessData(HttpServletResponse httpServletResponse);
+
+    /**
+     * 校验导出的日期区间：开始日期不能晚于结束日期，天数不能超过 exportMaxRangeDays
+     * @param begin
+     * @param end
+     */
+    void checkExportRange(LocalDate begin, LocalDate end);
+
+    /**
+     * 流式导出指定日期区间的运营数据
+     * @param begin
+     * @param end
+     * @param withDetail 是否附带订单明细页
+     * @param outputStream
+     * @param progressListener 进度回调（0-100），可以为null
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, boolean withDetail, OutputStream outputStream,
+                            IntConsumer progressListener);
 }
@@ -0,0 +1,39 @@
+package com.sky.service;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.event.OrderStatusChangeEvent;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface SalesLeaderboardService {
+
+    /**
+     * 订单完成时累加当天的商品销量
+     * @param event
+     */
+    void onOrderStatusChange(OrderStatusChangeEvent event);
+
+    /**
+     * 查询日期区间内销量排名前n的商品
+     * @param begin
+     * @param end
+     * @param n
+     * @return
+     */
+    List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int n);
+
+    /**
+     * 根据订单数据重建日期区间内每天的销量排行
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 日期区间是否都在排行数据的保留期内
+     * @param begin
+     * @return
+     */
+    boolean covers(LocalDate begin);
+}
@@ -1,7 +1,9 @@
 package com.sky.service;
 
+import com.sky.dto.ShoppingCartBatchDTO;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.ShoppingCart;
+import com.sky.vo.ShoppingCartBatchVO;
 
 import java.util.List;
 
@@ -29,4 +31,11 @@ public interface ShoppingCartService {
      * @param shoppingCartDTO
      */
     void subShoppingCart(ShoppingCartDTO shoppingCartDTO);
+
+    /**
+     * 批量修改购物车
+     * @param shoppingCartBatchDTO
+     * @return 修改后的购物车
+     */
+    ShoppingCartBatchVO batch(ShoppingCartBatchDTO shoppingCartBatchDTO);
 }
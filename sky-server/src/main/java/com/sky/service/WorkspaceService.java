@@ -1,9 +1,11 @@
 package com.sky.service;
 
 import com.sky.vo.BusinessDataVO;
+import com.sky.vo.CacheStatsVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceSnapshotVO;
 import java.time.LocalDateTime;
 
 public interface WorkspaceService {
@@ -34,4 +36,18 @@ public interface WorkspaceService {
      */
     SetmealOverViewVO getSetmealOverView();
 
+    /**
+     * 并行查询工作台全部数据
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    WorkspaceSnapshotVO getSnapshot(LocalDateTime beginTime, LocalDateTime endTime);
+
+    /**
+     * 查询工作台缓存的命中统计
+     * @return
+     */
+    CacheStatsVO getCacheStats();
+
 }
@@ -0,0 +1,169 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangeEvent;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.DailyStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class DailyStatsServiceImpl implements DailyStatsService {
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 订单状态变化时增量维护每日汇总数据
+     * 与订单更新在同一线程（和同一事务）中执行，失败只记录日志，由每晚对账修正
+     * @param event
+     */
+    @EventListener
+    public void onOrderStatusChange(OrderStatusChangeEvent event) {
+        if (!reportProperties.isRollupEnabled() || CollectionUtils.isEmpty(event.getOrderIds())) {
+            return;
+        }
+
+        try {
+            if (event.getFromStatus() == null) {
+                //新建订单
+                dailyBusinessStatsMapper.increaseTotalOrders(event.getOrderIds());
+                return;
+            }
+
+            if (Orders.COMPLETED.equals(event.getFromStatus())) {
+                //管理端取消已完成订单，撤回已完成订单数和营业额
+                dailyBusinessStatsMapper.decreaseCompletedOrders(event.getOrderIds());
+            }
+            if (Orders.COMPLETED.equals(event.getToStatus())) {
+                dailyBusinessStatsMapper.increaseCompletedOrders(event.getOrderIds());
+            } else if (Orders.CANCELLED.equals(event.getToStatus())) {
+                dailyBusinessStatsMapper.increaseCancelledOrders(event.getOrderIds());
+            }
+        } catch (Exception e) {
+            log.error("维护每日汇总数据失败：{}", event, e);
+        }
+    }
+
+    /**
+     * 新用户注册时累加当天新增用户数
+     * @param registerDate
+     */
+    public void increaseNewUsers(LocalDate registerDate) {
+        if (!reportProperties.isRollupEnabled()) {
+            return;
+        }
+
+        try {
+            dailyBusinessStatsMapper.increaseNewUsers(registerDate, 1);
+        } catch (Exception e) {
+            log.error("维护每日新增用户数失败：{}", registerDate, e);
+        }
+    }
+
+    /**
+     * 根据订单表和用户表重新计算日期区间内的每日汇总数据，回填较长的历史数据时需要分段调用
+     * @param begin
+     * @param end
+     */
+    public void rebuild(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_INVALID);
+        }
+        if (ChronoUnit.DAYS.between(begin, end) >= reportProperties.getMaxRangeDays()) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
+
+        Map map = new HashMap();
+        map.put("beginTime", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("endTime", LocalDateTime.of(end, LocalTime.MAX));
+
+        //各一次分组查询
+        Map<LocalDate, DailyOrderStatDTO> orderStatMap = orderMapper.countGroupByDate(map).stream()
+                .collect(Collectors.toMap(DailyOrderStatDTO::getStatDate, Function.identity()));
+        Map<LocalDate, Integer> newUserMap = userMapper.countGroupByDate(map).stream()
+                .collect(Collectors.toMap(DailyUserStatDTO::getStatDate, DailyUserStatDTO::getNewUsers));
+
+        //每一天都写入，没有数据的日期覆盖为0
+        LocalDateTime now = LocalDateTime.now();
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyOrderStatDTO orderStat = orderStatMap.get(date);
+            DailyBusinessStats stats = DailyBusinessStats.builder()
+                    .bizDate(date)
+                    .totalOrders(orderStat == null ? 0 : orderStat.getOrderCount())
+                    .completedOrders(orderStat == null ? 0 : orderStat.getValidOrderCount())
+                    .cancelledOrders(orderStat == null ? 0 : orderStat.getCancelledCount())
+                    .turnover(orderStat == null || orderStat.getTurnover() == null
+                            ? BigDecimal.ZERO : BigDecimal.valueOf(orderStat.getTurnover()))
+                    .newUsers(newUserMap.getOrDefault(date, 0))
+                    .updateTime(now)
+                    .build();
+            statsList.add(stats);
+        }
+
+        dailyBusinessStatsMapper.upsertBatch(statsList);
+        log.info("每日汇总数据对账完成：{}至{}，共{}天", begin, end, statsList.size());
+    }
+
+    /**
+     * 查询日期区间内的每日汇总数据，没有数据的日期补零
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<DailyBusinessStats> list(LocalDate begin, LocalDate end) {
+        Map<LocalDate, DailyBusinessStats> statsMap = dailyBusinessStatsMapper.listByDateRange(begin, end).stream()
+                .collect(Collectors.toMap(DailyBusinessStats::getBizDate, Function.identity()));
+
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyBusinessStats stats = statsMap.get(date);
+            if (stats == null) {
+                stats = DailyBusinessStats.builder()
+                        .bizDate(date)
+                        .totalOrders(0)
+                        .completedOrders(0)
+                        .cancelledOrders(0)
+                        .turnover(BigDecimal.ZERO)
+                        .newUsers(0)
+                        .build();
+            }
+            statsList.add(stats);
+        }
+        return statsList;
+    }
+}
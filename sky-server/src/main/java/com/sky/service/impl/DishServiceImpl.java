@@ -9,6 +9,7 @@ import com.sky.dto.DishDTO;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
+import com.sky.event.MenuChangeEvent;
 import com.sky.exception.DeletionNotAllowedException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
@@ -18,6 +19,7 @@ import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -34,6 +36,8 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Autowired
     private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
 
     /**
      * 新增菜品与口味
@@ -60,6 +64,8 @@ public class DishServiceImpl implements DishService {
             //向口味表插入n条数据
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("dish:save"));
     }
 
     /**
@@ -116,6 +122,7 @@ public class DishServiceImpl implements DishService {
         //sql: delete from dish_flavor where id in (?,?,?)
         dishFlavorMapper.deleteByDishIds(ids);
 
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("dish:delete"));
     }
 
     /**
@@ -159,6 +166,7 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("dish:update"));
     }
 
     /**
@@ -170,6 +178,8 @@ public class DishServiceImpl implements DishService {
         Dish dish = dishMapper.getById(id);
         dish.setStatus(status);
         dishMapper.update(dish);
+
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("dish:status"));
     }
 
     /**
@@ -4,31 +4,48 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.ProductSnapshot;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.cart.CartStore;
 import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
 import com.sky.dto.*;
 import com.sky.entity.*;
+import com.sky.event.OrderRefundEvent;
+import com.sky.event.OrderStatusChangeEvent;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.mapper.*;
+import com.sky.order.OrderStateMachine;
+import com.sky.order.OrderSubmitPipeline;
+import com.sky.order.OrderTransition;
+import com.sky.properties.OrderProperties;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.service.OrderService;
+import com.sky.utils.OrderNumberGenerator;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.*;
 import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -41,9 +58,6 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderDetailMapper orderDetailMapper;
 
-    @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
-
     @Autowired
     private AddressBookMapper addressBookMapper;
 
@@ -55,6 +69,24 @@ public class OrderServiceImpl implements OrderService {
 
     @Autowired
     private WebSocketServer webSocketServer;
+    @Autowired
+    private OrderNumberGenerator orderNumberGenerator;
+    @Autowired
+    private ProductSnapshotCache productSnapshotCache;
+    @Autowired
+    private OrderProperties orderProperties;
+
+    @Autowired
+    private OrderSubmitPipeline orderSubmitPipeline;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private OrderStateMachine orderStateMachine;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
 
     /**
      * 用户下单
@@ -77,21 +109,46 @@ public class OrderServiceImpl implements OrderService {
         //查询当前用户购物车
         Long userId = BaseContext.getCurrentId();
 
-        ShoppingCart shoppingCart = new ShoppingCart();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = cartStore.list(userId);
 
         if(shoppingCartList == null || shoppingCartList.size() == 0){
             throw new AddressBookBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
+        //根据本机商品快照计算订单金额（分），不使用客户端提交的金额和购物车中保存的单价
+        long itemCents = 0;
+        int itemCount = 0;
+        List<OrderDetail> orderDetailList = new ArrayList<>();
+        for(ShoppingCart cart: shoppingCartList){
+            ProductSnapshot product = productSnapshotCache.get(cart.getDishId(), cart.getSetmealId());
+            if(product == null || !StatusConstant.ENABLE.equals(product.getStatus())){
+                throw new OrderBusinessException(MessageConstant.ORDER_ITEM_UNAVAILABLE + "：" + cart.getName());
+            }
+            long priceCents = product.getPriceCents();
+            itemCents += priceCents * cart.getNumber();
+            itemCount += cart.getNumber();
+
+            //订单明细使用商品当前的名称、图片和单价
+            OrderDetail orderDetail = new OrderDetail();
+            BeanUtils.copyProperties(cart,orderDetail);
+            orderDetail.setAmount(product.getPrice());
+            orderDetail.setName(product.getName());
+            orderDetail.setImage(product.getImage());
+            orderDetailList.add(orderDetail);
+        }
+        long packCents = itemCount * orderProperties.getPackFeeCents();
+        long amountCents = itemCents + packCents + orderProperties.getDeliveryFeeCents();
+
         //向订单表插入一条数据
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO,orders);
+        orders.setAmount(BigDecimal.valueOf(amountCents, 2));
+        //打包费配置为整元，换算为元不会丢失金额
+        orders.setPackAmount(Math.toIntExact(packCents / 100));
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(orderNumberGenerator.next());
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
@@ -99,21 +156,23 @@ public class OrderServiceImpl implements OrderService {
         String address = addressBook.getProvinceName() + addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail();
         orders.setAddress(address);
 
+        //异步下单：写入日志和队列后立即返回，订单、明细和购物车数据由后台线程批量处理
+        if(orderProperties.isPipelineEnabled()){
+            return orderSubmitPipeline.submit(orders, orderDetailList, shoppingCartList);
+        }
+
         orderMapper.insert(orders);
+        publishStatusChange(orders, null, Orders.PENDING_PAYMENT);
 
-        List<OrderDetail> orderDetailList = new ArrayList<>();
         //向订单明细表插入一条或者多条数据
-        for(ShoppingCart cart: shoppingCartList){
-            OrderDetail orderDetail = new OrderDetail();
-            BeanUtils.copyProperties(cart,orderDetail);
+        for(OrderDetail orderDetail: orderDetailList){
             orderDetail.setOrderId(orders.getId());
-            orderDetailList.add(orderDetail);
         }
 
         orderDetailMapper.insertBatch(orderDetailList);
 
         //用户下单成功后，清空购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
+        cartStore.clean(userId);
 
         //封装VO返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
@@ -179,15 +238,22 @@ public class OrderServiceImpl implements OrderService {
         // 根据订单号查询订单
         Orders ordersDB = orderMapper.getByNumber(outTradeNo);
 
+        // 订单还没有写入数据库（异步下单）时抛出异常，由微信支付稍后重试回调
+        if (ordersDB == null) {
+            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+        }
+
         // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
         Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
                 .payStatus(Orders.PAID)
                 .checkoutTime(LocalDateTime.now())
                 .build();
 
-        orderMapper.update(orders);
+        // 订单已经不是待付款状态（重复通知或已超时取消）时不再修改订单状态
+        if (!orderStateMachine.tryFire(OrderTransition.PAY, ordersDB, orders)) {
+            refundCancelledPayment(ordersDB.getId(), outTradeNo);
+            return;
+        }
 
         //通过websocket向客户端推送
         Map map = new HashMap();
@@ -200,6 +266,33 @@ public class OrderServiceImpl implements OrderService {
 
     }
 
+    /**
+     * 订单在支付前已被取消（例如支付超时取消）时，把用户已经支付的款项退回
+     * 先把支付状态从未支付条件修改为退款，修改成功的请求负责退款，重复的支付通知不会重复退款；
+     * 退款失败时恢复支付状态并抛出异常，由微信支付稍后重新通知
+     * @param orderId
+     * @param outTradeNo
+     */
+    private void refundCancelledPayment(Long orderId, String outTradeNo) {
+        if (orderMapper.updatePayStatus(orderId, Orders.CANCELLED, Orders.UN_PAID, Orders.REFUND) == 0) {
+            log.info("订单状态不允许支付，忽略重复的支付通知：{}", outTradeNo);
+            return;
+        }
+
+        log.warn("订单已取消但用户已支付，发起退款：{}", outTradeNo);
+        try {
+            weChatPayUtil.refund(
+                    outTradeNo, //商户订单号
+                    outTradeNo, //商户退款单号
+                    new BigDecimal(0.01),//退款金额，单位 元
+                    new BigDecimal(0.01));//原订单金额
+        } catch (Exception e) {
+            orderMapper.updatePayStatus(orderId, Orders.CANCELLED, Orders.REFUND, Orders.UN_PAID);
+            log.error("已取消订单退款失败，需要人工处理：{}", outTradeNo, e);
+            throw new OrderBusinessException(MessageConstant.ORDER_REFUND_FAILED);
+        }
+    }
+
     /**
      * 根据id查询订单详情
      *
@@ -241,27 +334,36 @@ public class OrderServiceImpl implements OrderService {
 
         // 查询出订单明细，并封装入OrderVO进行响应
         if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
-
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
-
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
-
-                list.add(orderVO);
-            }
+            list = getOrderVOListWithDetails(page);
         }
         return new PageResult(page.getTotal(), list);
     }
 
+    /**
+     * 用户端游标分页查询历史订单
+     * @param cursor
+     * @param pageSize
+     * @param status
+     * @param withTotal
+     * @return
+     */
+    public CursorPageResult cursorQuery4User(String cursor, int pageSize, Integer status, boolean withTotal){
+        OrdersCursorQueryDTO ordersCursorQueryDTO = new OrdersCursorQueryDTO();
+        ordersCursorQueryDTO.setUserId(BaseContext.getCurrentId());
+        ordersCursorQueryDTO.setStatus(status);
+        ordersCursorQueryDTO.setCursor(cursor);
+        ordersCursorQueryDTO.setPageSize(pageSize);
+        ordersCursorQueryDTO.setWithTotal(withTotal);
+
+        return cursorQuery(ordersCursorQueryDTO, this::getOrderVOListWithDetails);
+    }
+
     /**
      * 用户取消订单
      *
      * @param id
      */
+    @Transactional(rollbackFor = Exception.class)
     public void userCancelById(Long id) throws Exception {
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
@@ -271,32 +373,24 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
         }
 
-        //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
-        if (ordersDB.getStatus() > 2) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
 
         // 订单处于待接单状态下取消，需要进行退款
-        if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            //调用微信支付退款接口
-            weChatPayUtil.refund(
-                    ordersDB.getNumber(), //商户订单号
-                    ordersDB.getNumber(), //商户退款单号
-                    new BigDecimal(0.01),//退款金额，单位 元
-                    new BigDecimal(0.01));//原订单金额
-
+        boolean refund = ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED);
+        if (refund) {
             //支付状态修改为 退款
             orders.setPayStatus(Orders.REFUND);
         }
 
-        // 更新订单状态、取消原因、取消时间
-        orders.setStatus(Orders.CANCELLED);
+        // 更新订单状态、取消原因、取消时间，只有待付款和待接单的订单可以取消
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        orderStateMachine.fire(OrderTransition.USER_CANCEL, ordersDB, orders);
+
+        // 状态修改成功后再退款，避免并发取消时重复退款；退款在事务提交后发起
+        if (refund) {
+            applicationEventPublisher.publishEvent(new OrderRefundEvent(ordersDB.getId(), ordersDB.getNumber()));
+        }
     }
 
     /**
@@ -311,20 +405,31 @@ public class OrderServiceImpl implements OrderService {
         // 根据订单id查询当前订单详情
         List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
 
-        // 将订单详情对象转换为购物车对象
-        List<ShoppingCart> shoppingCartList = orderDetailList.stream().map(x -> {
+        // 将订单详情对象转换为购物车对象，已删除或停售的商品不再加入购物车
+        List<ShoppingCart> shoppingCartList = new ArrayList<>();
+        for (OrderDetail x : orderDetailList) {
+            ProductSnapshot product = productSnapshotCache.get(x.getDishId(), x.getSetmealId());
+            if (product == null || !StatusConstant.ENABLE.equals(product.getStatus())) {
+                continue;
+            }
             ShoppingCart shoppingCart = new ShoppingCart();
 
-            // 将原订单详情里面的菜品信息重新复制到购物车对象中
+            // 将原订单详情里面的菜品信息重新复制到购物车对象中，名称、图片和单价使用商品当前的数据
             BeanUtils.copyProperties(x, shoppingCart, "id");
+            shoppingCart.setName(product.getName());
+            shoppingCart.setImage(product.getImage());
+            shoppingCart.setAmount(product.getPrice());
             shoppingCart.setUserId(userId);
             shoppingCart.setCreateTime(LocalDateTime.now());
 
-            return shoppingCart;
-        }).collect(Collectors.toList());
+            shoppingCartList.add(shoppingCart);
+        }
+        if (shoppingCartList.isEmpty()) {
+            throw new OrderBusinessException(MessageConstant.ORDER_ITEM_UNAVAILABLE);
+        }
 
-        // 将购物车对象批量添加到数据库
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        // 将购物车对象批量添加到购物车
+        cartStore.insertBatch(shoppingCartList);
     }
 
     /**
@@ -344,17 +449,94 @@ public class OrderServiceImpl implements OrderService {
         return new PageResult(page.getTotal(), orderVOList);
     }
 
-    private List<OrderVO> getOrderVOList(Page<Orders> page) {
+    /**
+     * 游标条件搜索订单
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    public CursorPageResult conditionSearchByCursor(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        return cursorQuery(ordersCursorQueryDTO, this::getOrderVOList);
+    }
+
+    /**
+     * 按 (下单时间, id) 倒序的游标分页查询，多查一条用于判断是否还有下一页
+     * @param ordersCursorQueryDTO
+     * @param converter
+     * @return
+     */
+    private CursorPageResult cursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO, Function<List<Orders>, List<OrderVO>> converter) {
+        int pageSize = ordersCursorQueryDTO.getPageSize() > 0 ? ordersCursorQueryDTO.getPageSize() : 10;
+        decodeCursor(ordersCursorQueryDTO);
+        ordersCursorQueryDTO.setLimit(pageSize + 1);
+
+        List<Orders> ordersList = orderMapper.cursorQuery(ordersCursorQueryDTO);
+        boolean hasMore = ordersList.size() > pageSize;
+        if (hasMore) {
+            ordersList = ordersList.subList(0, pageSize);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Orders last = ordersList.get(ordersList.size() - 1);
+            nextCursor = encodeCursor(last.getOrderTime(), last.getId());
+        }
+
+        // 总数需要额外的count查询，只在调用方要求时统计
+        Long total = ordersCursorQueryDTO.isWithTotal() ? orderMapper.countPageQuery(ordersCursorQueryDTO) : null;
+
+        return CursorPageResult.builder()
+                .records(converter.apply(ordersList))
+                .hasMore(hasMore)
+                .nextCursor(nextCursor)
+                .total(total)
+                .build();
+    }
+
+    /**
+     * 游标为 "下单时间,id" 的Base64编码，对调用方不透明
+     * @param orderTime
+     * @param id
+     * @return
+     */
+    private String encodeCursor(LocalDateTime orderTime, Long id) {
+        String cursor = orderTime + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，写入查询条件
+     * @param ordersCursorQueryDTO
+     */
+    private void decodeCursor(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        String cursor = ordersCursorQueryDTO.getCursor();
+        ordersCursorQueryDTO.setCursorTime(null);
+        ordersCursorQueryDTO.setCursorId(null);
+        if (cursor == null || cursor.isEmpty()) {
+            return;
+        }
+
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            ordersCursorQueryDTO.setCursorTime(LocalDateTime.parse(parts[0]));
+            ordersCursorQueryDTO.setCursorId(Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new OrderBusinessException(MessageConstant.ORDER_CURSOR_INVALID);
+        }
+    }
+
+    private List<OrderVO> getOrderVOList(List<Orders> ordersList) {
         // 需要返回订单菜品信息，自定义OrderVO响应结果
         List<OrderVO> orderVOList = new ArrayList<>();
 
-        List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
+            // 一次查询当前页全部订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
             for (Orders orders : ordersList) {
                 // 将共同字段复制到OrderVO
                 OrderVO orderVO = new OrderVO();
                 BeanUtils.copyProperties(orders, orderVO);
-                String orderDishes = getOrderDishesStr(orders);
+                String orderDishes = getOrderDishesStr(orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList()));
 
                 // 将订单菜品信息封装到orderVO中，并添加到orderVOList
                 orderVO.setOrderDishes(orderDishes);
@@ -365,15 +547,51 @@ public class OrderServiceImpl implements OrderService {
     }
 
     /**
-     * 根据订单id获取菜品信息字符串
+     * 转换为附带订单明细的OrderVO
      *
-     * @param orders
+     * @param ordersList
      * @return
      */
-    private String getOrderDishesStr(Orders orders) {
-        // 查询订单菜品详情信息（订单中的菜品和数量）
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+    private List<OrderVO> getOrderVOListWithDetails(List<Orders> ordersList) {
+        List<OrderVO> list = new ArrayList<>();
+
+        // 一次查询全部订单的明细
+        Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(ordersList);
+
+        for (Orders orders : ordersList) {
+            List<OrderDetail> orderDetails = orderDetailMap.getOrDefault(orders.getId(), Collections.emptyList());
+
+            OrderVO orderVO = new OrderVO();
+            BeanUtils.copyProperties(orders, orderVO);
+            orderVO.setOrderDetailList(orderDetails);
+
+            list.add(orderVO);
+        }
+        return list;
+    }
 
+    /**
+     * 批量查询订单明细，按订单id分组
+     *
+     * @param ordersList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<Orders> ordersList) {
+        List<Long> orderIds = ordersList.stream().map(Orders::getId).collect(Collectors.toList());
+        if (orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return orderDetailMapper.getByOrderIds(orderIds).stream()
+                .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+    }
+
+    /**
+     * 根据订单明细获取菜品信息字符串
+     *
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishesStr(List<OrderDetail> orderDetailList) {
         // 将每一条订单菜品信息拼接为字符串（格式：宫保鸡丁*3；）
         List<String> orderDishList = orderDetailList.stream().map(x -> {
             String orderDish = x.getName() + "*" + x.getNumber() + ";";
@@ -409,12 +627,8 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersConfirmDTO
      */
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
-        Orders orders = Orders.builder()
-                .id(ordersConfirmDTO.getId())
-                .status(Orders.CONFIRMED)
-                .build();
-
-        orderMapper.update(orders);
+        // 只有待接单的订单可以接单
+        orderStateMachine.fire(OrderTransition.CONFIRM, ordersConfirmDTO.getId(), null);
     }
 
     /**
@@ -422,35 +636,26 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersRejectionDTO
      */
+    @Transactional(rollbackFor = Exception.class)
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) throws Exception {
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(ordersRejectionDTO.getId());
 
-        // 订单只有存在且状态为2（待接单）才可以拒单
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        //支付状态
-        Integer payStatus = ordersDB.getPayStatus();
-        if (payStatus == Orders.PAID) {
-            //用户已支付，需要退款
-            String refund = weChatPayUtil.refund(
-                    ordersDB.getNumber(),
-                    ordersDB.getNumber(),
-                    new BigDecimal(0.01),
-                    new BigDecimal(0.01));
-            log.info("申请退款：{}", refund);
-        }
-
-        // 拒单需要退款，根据订单id更新订单状态、拒单原因、取消时间
+        // 拒单需要退款，根据订单id更新订单状态、拒单原因、取消时间，订单只有存在且状态为2（待接单）才可以拒单
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-        orders.setStatus(Orders.CANCELLED);
         orders.setRejectionReason(ordersRejectionDTO.getRejectionReason());
         orders.setCancelTime(LocalDateTime.now());
+        //用户已支付，支付状态和订单状态一起修改为退款
+        boolean refund = ordersDB != null && Orders.PAID.equals(ordersDB.getPayStatus());
+        if (refund) {
+            orders.setPayStatus(Orders.REFUND);
+        }
+        orderStateMachine.fire(OrderTransition.REJECT, ordersDB, orders);
 
-        orderMapper.update(orders);
+        //事务提交后发起退款
+        if (refund) {
+            applicationEventPublisher.publishEvent(new OrderRefundEvent(ordersDB.getId(), ordersDB.getNumber()));
+        }
     }
 
     /**
@@ -458,29 +663,26 @@ public class OrderServiceImpl implements OrderService {
      *
      * @param ordersCancelDTO
      */
+    @Transactional(rollbackFor = Exception.class)
     public void cancel(OrdersCancelDTO ordersCancelDTO) throws Exception {
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(ordersCancelDTO.getId());
 
-        //支付状态
-        Integer payStatus = ordersDB.getPayStatus();
-        if (payStatus == 1) {
-            //用户已支付，需要退款
-            String refund = weChatPayUtil.refund(
-                    ordersDB.getNumber(),
-                    ordersDB.getNumber(),
-                    new BigDecimal(0.01),
-                    new BigDecimal(0.01));
-            log.info("申请退款：{}", refund);
-        }
-
         // 管理端取消订单需要退款，根据订单id更新订单状态、取消原因、取消时间
         Orders orders = new Orders();
-        orders.setId(ordersCancelDTO.getId());
-        orders.setStatus(Orders.CANCELLED);
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        //用户已支付，支付状态和订单状态一起修改为退款
+        boolean refund = ordersDB != null && Orders.PAID.equals(ordersDB.getPayStatus());
+        if (refund) {
+            orders.setPayStatus(Orders.REFUND);
+        }
+        orderStateMachine.fire(OrderTransition.ADMIN_CANCEL, ordersDB, orders);
+
+        //事务提交后发起退款
+        if (refund) {
+            applicationEventPublisher.publishEvent(new OrderRefundEvent(ordersDB.getId(), ordersDB.getNumber()));
+        }
     }
 
     /**
@@ -489,20 +691,8 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     public void delivery(Long id) {
-        // 根据id查询订单
-        Orders ordersDB = orderMapper.getById(id);
-
-        // 校验订单是否存在，并且状态为3
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.CONFIRMED)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-        // 更新订单状态,状态转为派送中
-        orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
-
-        orderMapper.update(orders);
+        // 更新订单状态,状态转为派送中，只有已接单的订单可以派送
+        orderStateMachine.fire(OrderTransition.DELIVER, id, null);
     }
 
     /**
@@ -514,18 +704,42 @@ public class OrderServiceImpl implements OrderService {
         // 根据id查询订单
         Orders ordersDB = orderMapper.getById(id);
 
-        // 校验订单是否存在，并且状态为4
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.DELIVERY_IN_PROGRESS)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
+        // 更新订单状态,状态转为完成，只有派送中的订单可以完成
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-        // 更新订单状态,状态转为完成
-        orders.setStatus(Orders.COMPLETED);
         orders.setDeliveryTime(LocalDateTime.now());
+        orderStateMachine.fire(OrderTransition.COMPLETE, ordersDB, orders);
+    }
 
-        orderMapper.update(orders);
+    /**
+     * 批量接单
+     *
+     * @param ids
+     * @return
+     */
+    public OrderBatchResultVO batchConfirm(List<Long> ids) {
+        return orderStateMachine.fireAll(OrderTransition.CONFIRM, ids, null);
+    }
+
+    /**
+     * 批量派送
+     *
+     * @param ids
+     * @return
+     */
+    public OrderBatchResultVO batchDelivery(List<Long> ids) {
+        return orderStateMachine.fireAll(OrderTransition.DELIVER, ids, null);
+    }
+
+    /**
+     * 批量完成
+     *
+     * @param ids
+     * @return
+     */
+    public OrderBatchResultVO batchComplete(List<Long> ids) {
+        Orders orders = new Orders();
+        orders.setDeliveryTime(LocalDateTime.now());
+        return orderStateMachine.fireAll(OrderTransition.COMPLETE, ids, orders);
     }
 
     /**
@@ -549,4 +763,15 @@ public class OrderServiceImpl implements OrderService {
         webSocketServer.sendToAllClient(JSON.toJSONString(map));
     }
 
+    /**
+     * 发布订单状态变化事件
+     * @param orders
+     * @param fromStatus
+     * @param toStatus
+     */
+    private void publishStatusChange(Orders orders, Integer fromStatus, Integer toStatus) {
+        applicationEventPublisher.publishEvent(new OrderStatusChangeEvent(
+                Collections.singletonList(orders.getId()), fromStatus, toStatus, orders.getAmount()));
+    }
+
 }
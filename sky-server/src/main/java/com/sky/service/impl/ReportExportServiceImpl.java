@@ -0,0 +1,262 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.ReportExportService;
+import com.sky.service.ReportService;
+import com.sky.vo.ReportExportJobVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class ReportExportServiceImpl implements ReportExportService {
+
+    /**
+     * 导出任务状态
+     */
+    private static final String WAITING = "WAITING";
+    private static final String RUNNING = "RUNNING";
+    private static final String FINISHED = "FINISHED";
+    private static final String FAILED = "FAILED";
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private ThreadPoolTaskExecutor reportExportExecutor;
+
+    //任务id -> 任务
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    //缓存key -> 正在执行的任务id，相同请求只生成一次
+    private final Map<String, String> runningJobIds = new ConcurrentHashMap<>();
+
+    /**
+     * 提交异步导出任务，相同区间且数据未变化时直接使用已缓存的导出文件
+     * @param begin
+     * @param end
+     * @param detail
+     * @return
+     */
+    public ReportExportJobVO submit(LocalDate begin, LocalDate end, boolean detail) {
+        reportService.checkExportRange(begin, end);
+        String cacheKey = getCacheKey(begin, end, detail);
+        Path artifact = getArtifactPath(cacheKey);
+
+        //数据版本相同的文件已经生成过
+        if (Files.exists(artifact)) {
+            ExportJob job = new ExportJob(begin, end, detail, cacheKey);
+            job.status = FINISHED;
+            job.progress = 100;
+            job.cached = true;
+            jobs.put(job.jobId, job);
+            log.info("导出文件命中缓存:{}", cacheKey);
+            return job.toVO();
+        }
+
+        //先登记任务再发布正在执行的任务id，其他请求看到该id时一定能查到任务
+        ExportJob job = new ExportJob(begin, end, detail, cacheKey);
+        jobs.put(job.jobId, job);
+        String runningJobId = runningJobIds.compute(cacheKey,
+                (k, old) -> old != null && jobs.containsKey(old) ? old : job.jobId);
+
+        //相同的导出正在执行，直接返回该任务
+        if (!job.jobId.equals(runningJobId)) {
+            ExportJob runningJob = jobs.get(runningJobId);
+            if (runningJob != null) {
+                jobs.remove(job.jobId);
+                return runningJob.toVO();
+            }
+            runningJobIds.put(cacheKey, job.jobId);
+        }
+
+        try {
+            reportExportExecutor.execute(() -> generate(job, artifact));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.jobId);
+            runningJobIds.remove(cacheKey, job.jobId);
+            throw new ReportBusinessException(MessageConstant.EXPORT_BUSY);
+        }
+
+        return job.toVO();
+    }
+
+    /**
+     * 查询导出任务状态和进度
+     * @param jobId
+     * @return
+     */
+    public ReportExportJobVO getJob(String jobId) {
+        return getExistingJob(jobId).toVO();
+    }
+
+    /**
+     * 获取已完成任务的导出文件
+     * @param jobId
+     * @return
+     */
+    public File getArtifact(String jobId) {
+        ExportJob job = getExistingJob(jobId);
+        Path artifact = getArtifactPath(job.cacheKey);
+        if (!FINISHED.equals(job.status) || !Files.exists(artifact)) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FINISHED);
+        }
+        return artifact.toFile();
+    }
+
+    /**
+     * 每小时清理过期的导出文件和任务记录
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000)
+    public void cleanExpiredArtifacts() {
+        long expireMillis = TimeUnit.HOURS.toMillis(reportProperties.getExportArtifactTtlHours());
+        long now = System.currentTimeMillis();
+
+        jobs.values().removeIf(job -> !RUNNING.equals(job.status) && !WAITING.equals(job.status)
+                && now - job.createTime > expireMillis);
+
+        File[] files = new File(reportProperties.getExportDir()).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (now - file.lastModified() > expireMillis && !file.delete()) {
+                log.warn("删除过期导出文件失败:{}", file);
+            }
+        }
+    }
+
+    /**
+     * 在导出线程中生成文件，先写临时文件，完成后再原子替换为正式文件
+     * @param job
+     * @param artifact
+     */
+    private void generate(ExportJob job, Path artifact) {
+        job.status = RUNNING;
+        Path tempFile = null;
+        try {
+            Files.createDirectories(artifact.getParent());
+            tempFile = Files.createTempFile(artifact.getParent(), "export-", ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                reportService.exportBusinessData(job.begin, job.end, job.detail, outputStream,
+                        progress -> job.progress = progress);
+            }
+            Files.move(tempFile, artifact, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            job.progress = 100;
+            job.status = FINISHED;
+            log.info("导出任务完成:{}", job.jobId);
+        } catch (Exception e) {
+            log.error("导出任务失败:{}", job.jobId, e);
+            job.status = FAILED;
+            job.message = e.getMessage();
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ex) {
+                    log.warn("删除导出临时文件失败:{}", tempFile);
+                }
+            }
+        } finally {
+            runningJobIds.remove(job.cacheKey, job.jobId);
+        }
+    }
+
+    /**
+     * 缓存key由导出区间、是否含明细和区间内的数据版本组成，数据变化后自动生成新文件
+     * @param begin
+     * @param end
+     * @param detail
+     * @return
+     */
+    private String getCacheKey(LocalDate begin, LocalDate end, boolean detail) {
+        Map map = new HashMap();
+        map.put("beginTime", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("endTime", LocalDateTime.of(end, LocalTime.MAX));
+        String orderVersion = orderMapper.getDataVersion(map);
+        Integer newUsers = userMapper.countByMap(map);
+
+        return begin + "_" + end + "_" + (detail ? "detail" : "daily") + "_" + orderVersion + "-" + newUsers;
+    }
+
+    private Path getArtifactPath(String cacheKey) {
+        return Paths.get(reportProperties.getExportDir(), cacheKey + ".xlsx");
+    }
+
+    private ExportJob getExistingJob(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    /**
+     * 导出任务，状态和进度由导出线程更新、请求线程读取
+     */
+    private static class ExportJob {
+        private final String jobId = UUID.randomUUID().toString();
+        private final LocalDate begin;
+        private final LocalDate end;
+        private final boolean detail;
+        private final String cacheKey;
+        private final long createTime = System.currentTimeMillis();
+        private volatile String status = WAITING;
+        private volatile int progress;
+        private volatile boolean cached;
+        private volatile String message;
+
+        ExportJob(LocalDate begin, LocalDate end, boolean detail, String cacheKey) {
+            this.begin = begin;
+            this.end = end;
+            this.detail = detail;
+            this.cacheKey = cacheKey;
+        }
+
+        ReportExportJobVO toVO() {
+            return ReportExportJobVO.builder()
+                    .jobId(jobId)
+                    .begin(begin)
+                    .end(end)
+                    .detail(detail)
+                    .status(status)
+                    .progress(progress)
+                    .cached(cached)
+                    .message(message)
+                    .build();
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package com.sky.service.impl;
 
+import com.sky.analytics.ColumnarOrderStore;
+import com.sky.constant.MessageConstant;
+import com.sky.dto.CategorySalesDTO;
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.HourlyOrderStatDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
+import com.sky.exception.ReportBusinessException;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.DailyStatsService;
 import com.sky.service.ReportService;
-import com.sky.service.WorkspaceService;
+import com.sky.service.SalesLeaderboardService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -20,26 +33,55 @@ import javax.servlet.http.HttpServletResponse;
 import javax.xml.soap.SOAPHeaderElement;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    private static final String[] ORDER_STATUS_NAMES = {"待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+
+    private static final String[] WEEKDAY_NAMES = {"星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
+
+    private static final int HOURS_OF_DAY = 24;
+
+    //已结束日期的分时统计，按最近使用淘汰
+    private final Map<LocalDate, HourlyOrderStatDTO[]> closedDayHourlyCache = Collections.synchronizedMap(
+            new LinkedHashMap<LocalDate, HourlyOrderStatDTO[]>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LocalDate, HourlyOrderStatDTO[]> eldest) {
+                    return size() > reportProperties.getHourlyCacheDays();
+                }
+            });
+
     @Autowired
     private OrderMapper orderMapper;
 
     @Autowired
     private UserMapper userMapper;
     @Autowired
-    private WorkspaceService workspaceService;
+    private DailyStatsService dailyStatsService;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private SalesLeaderboardService salesLeaderboardService;
+    @Autowired
+    private ColumnarOrderStore columnarOrderStore;
 
     /**
      * 根据起始和结束日期得到日期列表 private
@@ -48,6 +90,8 @@ public class ReportServiceImpl implements ReportService {
      * @return
      */
     private List<LocalDate> getDateListBetween(LocalDate begin, LocalDate end){
+        checkDateRange(begin, end);
+
         //初始化
         List<LocalDate> dateList = new ArrayList<>();
 
@@ -62,6 +106,112 @@ public class ReportServiceImpl implements ReportService {
         return dateList;
     }
 
+    /**
+     * 校验日期区间：开始日期不能晚于结束日期，天数不能超过 maxRangeDays
+     * @param begin
+     * @param end
+     */
+    private void checkDateRange(LocalDate begin, LocalDate end){
+        if(begin == null || end == null || begin.isAfter(end)){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_INVALID);
+        }
+        if(ChronoUnit.DAYS.between(begin, end) >= reportProperties.getMaxRangeDays()){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
+    }
+
+    /**
+     * 校验导出的日期区间：开始日期不能晚于结束日期，天数不能超过 exportMaxRangeDays
+     * @param begin
+     * @param end
+     */
+    public void checkExportRange(LocalDate begin, LocalDate end){
+        if(begin == null || end == null || begin.isAfter(end)){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_INVALID);
+        }
+        if(ChronoUnit.DAYS.between(begin, end) >= reportProperties.getExportMaxRangeDays()){
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_TOO_LONG);
+        }
+    }
+
+    /**
+     * 一次分组查询得到区间内每天的订单统计，key为日期，没有订单的日期不在结果中
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, DailyOrderStatDTO> getDailyOrderStats(LocalDate begin, LocalDate end){
+        //使用内存列式数据
+        if(useColumnar(begin)){
+            return columnarOrderStore.dailyOrderStats(begin, end);
+        }
+
+        //启用汇总表时按天读取汇总数据，不再扫描订单表
+        if(reportProperties.isRollupEnabled()){
+            return dailyStatsService.list(begin, end).stream()
+                    .collect(Collectors.toMap(DailyBusinessStats::getBizDate, stats -> DailyOrderStatDTO.builder()
+                            .statDate(stats.getBizDate())
+                            .orderCount(stats.getTotalOrders())
+                            .validOrderCount(stats.getCompletedOrders())
+                            .cancelledCount(stats.getCancelledOrders())
+                            .turnover(stats.getTurnover().doubleValue())
+                            .build()));
+        }
+
+        Map map = new HashMap();
+        map.put("beginTime", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("endTime", LocalDateTime.of(end, LocalTime.MAX));
+
+        List<DailyOrderStatDTO> list = orderMapper.countGroupByDate(map);
+        return list.stream().collect(Collectors.toMap(DailyOrderStatDTO::getStatDate, Function.identity()));
+    }
+
+    /**
+     * 一次分组查询得到区间内每天的新增用户数，key为日期，没有新增用户的日期不在结果中
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, Integer> getDailyNewUsers(LocalDate begin, LocalDate end){
+        if(reportProperties.isRollupEnabled()){
+            return dailyStatsService.list(begin, end).stream()
+                    .collect(Collectors.toMap(DailyBusinessStats::getBizDate, DailyBusinessStats::getNewUsers));
+        }
+
+        Map map = new HashMap();
+        map.put("beginTime", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("endTime", LocalDateTime.of(end, LocalTime.MAX));
+        return userMapper.countGroupByDate(map).stream()
+                .collect(Collectors.toMap(DailyUserStatDTO::getStatDate, DailyUserStatDTO::getNewUsers));
+    }
+
+    /**
+     * 根据某一天（或汇总后）的订单统计和新增用户数计算营业数据
+     * @param stat
+     * @param newUsers
+     * @return
+     */
+    private BusinessDataVO toBusinessData(DailyOrderStatDTO stat, Integer newUsers){
+        int totalOrderCount = stat == null ? 0 : stat.getOrderCount();
+        int validOrderCount = stat == null ? 0 : stat.getValidOrderCount();
+        double turnover = stat == null || stat.getTurnover() == null ? 0.0 : stat.getTurnover();
+
+        Double unitPrice = 0.0;
+        Double orderCompletionRate = 0.0;
+        if(totalOrderCount != 0 && validOrderCount != 0){
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            unitPrice = turnover / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers == null ? 0 : newUsers)
+                .build();
+    }
+
     /**
      * 统计指定时间区间内的营业额
      * @param begin
@@ -73,16 +223,11 @@ public class ReportServiceImpl implements ReportService {
         List<LocalDate> dateList = getDateListBetween(begin, end);//用于存放begin到end每一天的日期
         List<Double> turnoverList = new ArrayList<>();
 
+        //一次查询整个区间，再在内存中按日期补零
+        Map<LocalDate, DailyOrderStatDTO> statMap = getDailyOrderStats(begin, end);
         for(LocalDate date:dateList){
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            Map map = new HashMap();
-            map.put("beginTime", beginTime);
-            map.put("endTime", endTime);
-            map.put("status", Orders.COMPLETED);
-            Double turnOver = orderMapper.sumByMap(map);
-            turnOver = turnOver == null ? 0.0 : turnOver;
+            DailyOrderStatDTO stat = statMap.get(date);
+            Double turnOver = stat == null || stat.getTurnover() == null ? 0.0 : stat.getTurnover();
             turnoverList.add(turnOver);
         }
 
@@ -109,17 +254,17 @@ public class ReportServiceImpl implements ReportService {
         //存放每天的总用户数量
         List<Integer> totalUserList = new ArrayList<>();
 
-        for(LocalDate date:dateList){
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            Map map = new HashMap();
+        //区间开始之前的用户总数，作为累计的基数
+        Map map = new HashMap();
+        map.put("endTime", LocalDateTime.of(begin, LocalTime.MIN));
+        Integer totalUser = userMapper.countByMap(map);
 
-            map.put("endTime", endTime);
-            Integer totalUser = userMapper.countByMap(map);
+        //一次分组查询（或读取汇总表）得到区间内每天的新增用户数
+        Map<LocalDate, Integer> newUserMap = getDailyNewUsers(begin, end);
 
-            map.put("beginTime", beginTime);
-            Integer newUser = userMapper.countByMap(map);
+        for(LocalDate date:dateList){
+            Integer newUser = newUserMap.getOrDefault(date, 0);
+            totalUser += newUser;
 
             newUserList.add(newUser);
             totalUserList.add(totalUser);
@@ -151,19 +296,13 @@ public class ReportServiceImpl implements ReportService {
         //存放每日有效订单数
         List<Integer> validOrderCountList = new ArrayList<>();
 
-        //遍历dateList集合查询每天的有效订单数
+        //一次查询整个区间，再遍历dateList按日期补零
+        Map<LocalDate, DailyOrderStatDTO> statMap = getDailyOrderStats(begin, end);
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
+            DailyOrderStatDTO stat = statMap.get(date);
 
-            //查询每天的订单总数
-            Integer orderCount = getOrderCount(beginTime, endTime, null);
-
-            //查询每天的有效订单数
-            Integer validOrderCount = getOrderCount(beginTime, endTime, Orders.COMPLETED);
-
-            orderCountList.add(orderCount);
-            validOrderCountList.add(validOrderCount);
+            orderCountList.add(stat == null ? 0 : stat.getOrderCount());
+            validOrderCountList.add(stat == null ? 0 : stat.getValidOrderCount());
         }
 
         //总订单数
@@ -189,22 +328,6 @@ public class ReportServiceImpl implements ReportService {
                 .build();
     }
 
-    /**
-     * 获取指定时间区间内某种状态（或者无状态）的订单数量
-     * @param begin
-     * @param end
-     * @param status
-     * @return
-     */
-    private Integer getOrderCount(LocalDateTime begin, LocalDateTime end, Integer status){
-        Map map = new HashMap();
-        map.put("beginTime", begin);
-        map.put("endTime", end);
-        map.put("status", status);
-
-        return orderMapper.countByMap(map);
-    }
-
     /**
      * 统计指定时间区间内的销量前10
      * @param begin
@@ -212,10 +335,18 @@ public class ReportServiceImpl implements ReportService {
      * @return
      */
     public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end){
-        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
-        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
-
-        List<GoodsSalesDTO> salesTop10 = orderMapper.getSalesTop10(beginTime, endTime);
+        checkDateRange(begin, end);
+        List<GoodsSalesDTO> salesTop10;
+        if(useColumnar(begin)){
+            salesTop10 = columnarOrderStore.salesTop(begin, end, 10);
+        }else if(reportProperties.isLeaderboardEnabled() && salesLeaderboardService.covers(begin)){
+            //合并Redis中每天的销量排行
+            salesTop10 = salesLeaderboardService.top(begin, end, 10);
+        }else{
+            LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+            LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+            salesTop10 = orderMapper.getSalesTop10(beginTime, endTime);
+        }
 
         List<String> names = salesTop10.stream().map(GoodsSalesDTO::getName).collect(Collectors.toList());
         String nameList = StringUtils.join(names, ",");
@@ -230,6 +361,171 @@ public class ReportServiceImpl implements ReportService {
                 .build();
     }
 
+    /**
+     * 统计指定时间区间内各分类的销量和销售额
+     * @param begin
+     * @param end
+     * @return
+     */
+    public CategorySalesReportVO getCategorySales(LocalDate begin, LocalDate end){
+        checkDateRange(begin, end);
+        List<CategorySalesDTO> categorySales;
+        if(useColumnar(begin)){
+            categorySales = columnarOrderStore.categorySales(begin, end);
+        }else{
+            Map map = new HashMap();
+            map.put("beginTime", LocalDateTime.of(begin, LocalTime.MIN));
+            map.put("endTime", LocalDateTime.of(end, LocalTime.MAX));
+            categorySales = orderMapper.sumCategorySales(map);
+        }
+
+        return CategorySalesReportVO
+                .builder()
+                .nameList(categorySales.stream().map(CategorySalesDTO::getCategoryName).collect(Collectors.joining(",")))
+                .numberList(StringUtils.join(categorySales.stream().map(CategorySalesDTO::getNumber).collect(Collectors.toList()), ","))
+                .amountList(StringUtils.join(categorySales.stream().map(CategorySalesDTO::getAmount).collect(Collectors.toList()), ","))
+                .build();
+    }
+
+    /**
+     * 统计指定时间区间内每个小时的订单数和营业额
+     * @param begin
+     * @param end
+     * @return
+     */
+    public HourlyReportVO getHourlyStatistics(LocalDate begin, LocalDate end){
+        int[] orderCounts = new int[HOURS_OF_DAY];
+        int[] validOrderCounts = new int[HOURS_OF_DAY];
+        double[] turnovers = new double[HOURS_OF_DAY];
+
+        for(HourlyOrderStatDTO[] hourlyStats : getHourlyOrderStats(begin, end).values()){
+            for(int hour = 0; hour < HOURS_OF_DAY; hour++){
+                HourlyOrderStatDTO stat = hourlyStats[hour];
+                if(stat != null){
+                    orderCounts[hour] += stat.getOrderCount();
+                    validOrderCounts[hour] += stat.getValidOrderCount();
+                    turnovers[hour] += stat.getTurnover() == null ? 0.0 : stat.getTurnover();
+                }
+            }
+        }
+
+        return HourlyReportVO
+                .builder()
+                .hourList(StringUtils.join(hourRange(), ","))
+                .orderCountList(StringUtils.join(orderCounts, ','))
+                .validOrderCountList(StringUtils.join(validOrderCounts, ','))
+                .turnoverList(StringUtils.join(turnovers, ','))
+                .build();
+    }
+
+    /**
+     * 统计指定时间区间内星期几×小时的订单数和营业额热力图
+     * @param begin
+     * @param end
+     * @return
+     */
+    public HeatmapReportVO getHeatmap(LocalDate begin, LocalDate end){
+        int[][] orderCounts = new int[WEEKDAY_NAMES.length][HOURS_OF_DAY];
+        double[][] turnovers = new double[WEEKDAY_NAMES.length][HOURS_OF_DAY];
+        int[] dayCounts = new int[WEEKDAY_NAMES.length];
+
+        for(Map.Entry<LocalDate, HourlyOrderStatDTO[]> entry : getHourlyOrderStats(begin, end).entrySet()){
+            int weekday = entry.getKey().getDayOfWeek().getValue() - 1;
+            dayCounts[weekday]++;
+            for(int hour = 0; hour < HOURS_OF_DAY; hour++){
+                HourlyOrderStatDTO stat = entry.getValue()[hour];
+                if(stat != null){
+                    orderCounts[weekday][hour] += stat.getOrderCount();
+                    turnovers[weekday][hour] += stat.getTurnover() == null ? 0.0 : stat.getTurnover();
+                }
+            }
+        }
+
+        List<List<Integer>> orderCountMatrix = new ArrayList<>();
+        List<List<Double>> turnoverMatrix = new ArrayList<>();
+        for(int weekday = 0; weekday < WEEKDAY_NAMES.length; weekday++){
+            orderCountMatrix.add(Arrays.stream(orderCounts[weekday]).boxed().collect(Collectors.toList()));
+            turnoverMatrix.add(Arrays.stream(turnovers[weekday]).boxed().collect(Collectors.toList()));
+        }
+
+        return HeatmapReportVO
+                .builder()
+                .weekdayList(StringUtils.join(WEEKDAY_NAMES, ","))
+                .hourList(StringUtils.join(hourRange(), ","))
+                .dayCountList(StringUtils.join(dayCounts, ','))
+                .orderCountMatrix(orderCountMatrix)
+                .turnoverMatrix(turnoverMatrix)
+                .build();
+    }
+
+    /**
+     * 得到区间内每天按小时的订单统计，数组下标为小时，没有订单的小时为null
+     * 已结束的日期（前天及以前，订单状态不会再变化）优先读取缓存，其余日期合并为一次分组查询
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, HourlyOrderStatDTO[]> getHourlyOrderStats(LocalDate begin, LocalDate end){
+        checkDateRange(begin, end);
+        LocalDate lastClosedDay = LocalDate.now().minusDays(2);
+        Map<LocalDate, HourlyOrderStatDTO[]> hourlyStatMap = new HashMap<>();
+
+        //未命中缓存的日期所在的最小区间
+        LocalDate missBegin = null;
+        LocalDate missEnd = null;
+        for(LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)){
+            HourlyOrderStatDTO[] cached = date.isAfter(lastClosedDay) ? null : closedDayHourlyCache.get(date);
+            if(cached != null){
+                hourlyStatMap.put(date, cached);
+            }else{
+                if(missBegin == null){
+                    missBegin = date;
+                }
+                missEnd = date;
+            }
+        }
+        if(missBegin == null){
+            return hourlyStatMap;
+        }
+
+        Map map = new HashMap();
+        map.put("beginTime", LocalDateTime.of(missBegin, LocalTime.MIN));
+        map.put("endTime", LocalDateTime.of(missEnd, LocalTime.MAX));
+        Map<LocalDate, HourlyOrderStatDTO[]> loadedMap = new HashMap<>();
+        for(HourlyOrderStatDTO stat : orderMapper.countGroupByDateHour(map)){
+            loadedMap.computeIfAbsent(stat.getStatDate(), date -> new HourlyOrderStatDTO[HOURS_OF_DAY])[stat.getStatHour()] = stat;
+        }
+
+        for(LocalDate date = missBegin; !date.isAfter(missEnd); date = date.plusDays(1)){
+            if(hourlyStatMap.containsKey(date)){
+                continue;
+            }
+            HourlyOrderStatDTO[] hourlyStats = loadedMap.getOrDefault(date, new HourlyOrderStatDTO[HOURS_OF_DAY]);
+            hourlyStatMap.put(date, hourlyStats);
+            if(!date.isAfter(lastClosedDay)){
+                closedDayHourlyCache.put(date, hourlyStats);
+            }
+        }
+        return hourlyStatMap;
+    }
+
+    private List<Integer> hourRange(){
+        List<Integer> hours = new ArrayList<>();
+        for(int hour = 0; hour < HOURS_OF_DAY; hour++){
+            hours.add(hour);
+        }
+        return hours;
+    }
+
+    /**
+     * 报表引擎为columnar且内存数据包含查询区间时使用内存列式数据
+     * @param begin
+     * @return
+     */
+    private boolean useColumnar(LocalDate begin){
+        return ColumnarOrderStore.ENGINE.equals(reportProperties.getEngine()) && columnarOrderStore.covers(begin);
+    }
+
     /**
      * 导出运营数据
      * @param httpServletResponse
@@ -238,9 +534,12 @@ public class ReportServiceImpl implements ReportService {
         //30天前到昨天
         LocalDate dateBegin = LocalDate.now().minusDays(30);
         LocalDate dateEnd = LocalDate.now().minusDays(1);
-        //查询数据库，获取营业数据
-        BusinessDataVO businessDataVO = workspaceService.getBusinessData(LocalDateTime.of(dateBegin, LocalTime.MIN),
-                LocalDateTime.of(dateEnd, LocalTime.MAX));
+
+        //一次分组查询得到每天的营业数据，再在内存中汇总
+        Map<LocalDate, DailyOrderStatDTO> statMap = getDailyOrderStats(dateBegin, dateEnd);
+        Map<LocalDate, Integer> newUserMap = getDailyNewUsers(dateBegin, dateEnd);
+        BusinessDataVO businessDataVO = toBusinessData(sumOrderStats(statMap.values()),
+                newUserMap.values().stream().mapToInt(Integer::intValue).sum());
 
         //通过POI将数据写入Excel文件
         InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
@@ -265,15 +564,11 @@ public class ReportServiceImpl implements ReportService {
             row.getCell(2).setCellValue(businessDataVO.getValidOrderCount());
             row.getCell(4).setCellValue(businessDataVO.getUnitPrice());
 
-            //填充明确诗句
+            //填充明细数据
             for(int i = 0; i < 30;i++){
-                //遍历查询某一天数据
+                //从分组结果中取某一天数据
                 LocalDate date = dateBegin.plusDays(i);
-                LocalDateTime dateTimeBegin = LocalDateTime.of(date, LocalTime.MIN);
-                LocalDateTime dateTimeEnd = LocalDateTime.of(date, LocalTime.MAX);
-                BusinessDataVO businessData = workspaceService.getBusinessData(dateTimeBegin, dateTimeEnd);
-
-                //BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
+                BusinessDataVO businessData = toBusinessData(statMap.get(date), newUserMap.get(date));
 
                 row = sheet1.getRow(7 + i);
                 row.getCell(1).setCellValue(date.toString());
@@ -298,4 +593,167 @@ public class ReportServiceImpl implements ReportService {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * 流式导出任意日期区间的运营数据
+     * 基于SXSSF，只在内存中保留固定行数的窗口，其余行写入临时文件；订单明细通过流式查询逐行写入
+     * @param begin
+     * @param end
+     * @param withDetail 是否附带订单明细页
+     * @param outputStream
+     * @param progressListener 进度回调（0-100），可以为null
+     */
+    public void exportBusinessData(LocalDate begin, LocalDate end, boolean withDetail, OutputStream outputStream,
+                                   IntConsumer progressListener){
+        checkExportRange(begin, end);
+        IntConsumer progress = progressListener == null ? p -> { } : progressListener;
+        SXSSFWorkbook excel = new SXSSFWorkbook(reportProperties.getExportRowWindow());
+        excel.setCompressTempFiles(true);
+
+        try {
+            writeDailySheet(excel.createSheet("运营数据"), begin, end);
+            progress.accept(withDetail ? 10 : 90);
+
+            if(withDetail){
+                writeOrderDetailSheet(excel.createSheet("订单明细"), begin, end, progress);
+            }
+
+            excel.write(outputStream);
+            outputStream.flush();
+            progress.accept(100);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            //删除SXSSF产生的临时文件
+            excel.dispose();
+            try {
+                excel.close();
+            } catch (IOException e) {
+                log.warn("关闭Excel失败", e);
+            }
+        }
+    }
+
+    /**
+     * 写入概览和每日营业数据，数据来自一次分组查询
+     * @param sheet
+     * @param begin
+     * @param end
+     */
+    private void writeDailySheet(Sheet sheet, LocalDate begin, LocalDate end){
+        Map<LocalDate, DailyOrderStatDTO> statMap = getDailyOrderStats(begin, end);
+        Map<LocalDate, Integer> newUserMap = getDailyNewUsers(begin, end);
+        BusinessDataVO total = toBusinessData(sumOrderStats(statMap.values()),
+                newUserMap.values().stream().mapToInt(Integer::intValue).sum());
+
+        int rowIndex = 0;
+        sheet.createRow(rowIndex++).createCell(0).setCellValue("时间" + begin + "至" + end);
+
+        //概览数据
+        Row row = sheet.createRow(rowIndex++);
+        writeCells(row, "营业额", "订单完成率", "新增用户数", "有效订单", "平均客单价");
+        row = sheet.createRow(rowIndex++);
+        row.createCell(0).setCellValue(total.getTurnover());
+        row.createCell(1).setCellValue(total.getOrderCompletionRate());
+        row.createCell(2).setCellValue(total.getNewUsers());
+        row.createCell(3).setCellValue(total.getValidOrderCount());
+        row.createCell(4).setCellValue(total.getUnitPrice());
+
+        //明细数据
+        rowIndex++;
+        writeCells(sheet.createRow(rowIndex++), "日期", "营业额", "有效订单", "订单完成率", "平均客单价", "新增用户数");
+        for(LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)){
+            BusinessDataVO businessData = toBusinessData(statMap.get(date), newUserMap.get(date));
+
+            row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(date.toString());
+            row.createCell(1).setCellValue(businessData.getTurnover());
+            row.createCell(2).setCellValue(businessData.getValidOrderCount());
+            row.createCell(3).setCellValue(businessData.getOrderCompletionRate());
+            row.createCell(4).setCellValue(businessData.getUnitPrice());
+            row.createCell(5).setCellValue(businessData.getNewUsers());
+        }
+    }
+
+    /**
+     * 写入订单明细，订单通过流式查询逐行读取，不在内存中整体保存
+     * @param sheet
+     * @param begin
+     * @param end
+     * @param progress 明细页进度映射到10-90
+     */
+    private void writeOrderDetailSheet(Sheet sheet, LocalDate begin, LocalDate end, IntConsumer progress){
+        writeCells(sheet.createRow(0), "订单号", "下单时间", "订单状态", "金额", "收货人", "手机号", "地址");
+
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        //先统计总行数用于计算进度
+        Map map = new HashMap();
+        map.put("beginTime", beginTime);
+        map.put("endTime", endTime);
+        int total = Math.max(orderMapper.countByMap(map), 1);
+
+        int[] rowIndex = {1};
+        orderMapper.streamByOrderTime(beginTime, endTime,
+                resultContext -> {
+                    Orders orders = resultContext.getResultObject();
+                    if(rowIndex[0] % 1000 == 0){
+                        progress.accept(10 + (int) Math.min(80, (long) rowIndex[0] * 80 / total));
+                    }
+
+                    Row row = sheet.createRow(rowIndex[0]++);
+                    row.createCell(0).setCellValue(orders.getNumber());
+                    row.createCell(1).setCellValue(String.valueOf(orders.getOrderTime()));
+                    row.createCell(2).setCellValue(getStatusName(orders.getStatus()));
+                    row.createCell(3).setCellValue(orders.getAmount() == null ? 0.0 : orders.getAmount().doubleValue());
+                    row.createCell(4).setCellValue(orders.getConsignee());
+                    row.createCell(5).setCellValue(orders.getPhone());
+                    row.createCell(6).setCellValue(orders.getAddress());
+                });
+    }
+
+    /**
+     * 汇总多天的订单统计
+     * @param stats
+     * @return
+     */
+    private DailyOrderStatDTO sumOrderStats(Collection<DailyOrderStatDTO> stats){
+        int orderCount = 0;
+        int validOrderCount = 0;
+        double turnover = 0.0;
+        for(DailyOrderStatDTO stat : stats){
+            orderCount += stat.getOrderCount();
+            validOrderCount += stat.getValidOrderCount();
+            turnover += stat.getTurnover() == null ? 0.0 : stat.getTurnover();
+        }
+        return DailyOrderStatDTO.builder()
+                .orderCount(orderCount)
+                .validOrderCount(validOrderCount)
+                .turnover(turnover)
+                .build();
+    }
+
+    /**
+     * 依次写入一行的单元格
+     * @param row
+     * @param values
+     */
+    private void writeCells(Row row, String... values){
+        for(int i = 0; i < values.length; i++){
+            row.createCell(i).setCellValue(values[i]);
+        }
+    }
+
+    /**
+     * 订单状态名称 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+     * @param status
+     * @return
+     */
+    private String getStatusName(Integer status){
+        if(status == null || status < 1 || status > ORDER_STATUS_NAMES.length){
+            return "";
+        }
+        return ORDER_STATUS_NAMES[status - 1];
+    }
 }
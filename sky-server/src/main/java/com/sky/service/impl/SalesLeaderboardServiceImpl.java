@@ -0,0 +1,291 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.DailyGoodsSalesDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.Orders;
+import com.sky.event.OrderStatusChangeEvent;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.SalesLeaderboardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.CollectionUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 基于Redis有序集合的商品销量排行
+ * 每天一个有序集合 sales_top:{yyyyMMdd}，成员为 d:{菜品id} 或 s:{套餐id}，分值为当天销量
+ * 商品名称单独保存在哈希 sales_top:names 中
+ */
+@Service
+@Slf4j
+public class SalesLeaderboardServiceImpl implements SalesLeaderboardService {
+
+    private static final String KEY_PREFIX = "sales_top:";
+    private static final String NAMES_KEY = KEY_PREFIX + "names";
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    //区间合并结果的保留时间
+    private static final Duration UNION_TTL = Duration.ofSeconds(10);
+
+    //重建任务执行中的标记
+    private static final String REBUILDING_KEY = KEY_PREFIX + "rebuilding";
+
+    //重建标记的最长保留时间，重建进程异常退出时自动清除
+    private static final Duration REBUILD_TIMEOUT = Duration.ofMinutes(30);
+
+    //累加当天销量（撤回时为负数，减到0的商品移出排行），正在重建时同时累加到增量key
+    private static final DefaultRedisScript<Long> INCREASE_SCRIPT = new DefaultRedisScript<>(
+            "local score = redis.call('zincrby', KEYS[1], ARGV[2], ARGV[1]) "
+                    + "if tonumber(score) <= 0 then redis.call('zrem', KEYS[1], ARGV[1]) end "
+                    + "if redis.call('exists', KEYS[3]) == 1 then "
+                    + "redis.call('zincrby', KEYS[2], ARGV[2], ARGV[1]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[3]) "
+                    + "end "
+                    + "return 1", Long.class);
+
+    //用临时key替换当天数据，并合并重建期间的增量
+    private static final DefaultRedisScript<Long> SWAP_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 1 then redis.call('rename', KEYS[1], KEYS[2]) "
+                    + "else redis.call('del', KEYS[2]) end "
+                    + "if redis.call('exists', KEYS[3]) == 1 then "
+                    + "redis.call('zunionstore', KEYS[2], 2, KEYS[2], KEYS[3]) "
+                    + "redis.call('del', KEYS[3]) "
+                    + "end "
+                    + "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 订单完成时累加当天的商品销量，已完成订单被取消时撤回销量
+     * 在订单事务提交后执行，失败只记录日志，可通过重建命令修正
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChange(OrderStatusChangeEvent event) {
+        if (!reportProperties.isLeaderboardEnabled() || CollectionUtils.isEmpty(event.getOrderIds())) {
+            return;
+        }
+        boolean completed = Orders.COMPLETED.equals(event.getToStatus());
+        boolean revoked = Orders.COMPLETED.equals(event.getFromStatus()) && Orders.CANCELLED.equals(event.getToStatus());
+        if (!completed && !revoked) {
+            return;
+        }
+
+        try {
+            Map map = new HashMap();
+            map.put("orderIds", event.getOrderIds());
+            //事务已提交，撤回时订单已是取消状态，按取消状态查询销量
+            map.put("status", event.getToStatus());
+            List<DailyGoodsSalesDTO> salesList = orderMapper.sumGoodsSalesGroupByDate(map);
+            if (revoked) {
+                salesList.forEach(sales -> sales.setNumber(-sales.getNumber()));
+            }
+            increase(salesList);
+        } catch (Exception e) {
+            log.error("维护商品销量排行失败：{}", event, e);
+        }
+    }
+
+    /**
+     * 查询日期区间内销量排名前n的商品，多天时先将每天的有序集合合并到临时key
+     * @param begin
+     * @param end
+     * @param n
+     * @return
+     */
+    public List<GoodsSalesDTO> top(LocalDate begin, LocalDate end, int n) {
+        if (begin == null || end == null || begin.isAfter(end) || n <= 0) {
+            return Collections.emptyList();
+        }
+        List<String> dayKeys = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dayKeys.add(getDayKey(date));
+        }
+
+        String key = dayKeys.get(0);
+        if (dayKeys.size() > 1) {
+            key = KEY_PREFIX + "union:" + DAY_FORMATTER.format(begin) + ":" + DAY_FORMATTER.format(end);
+            stringRedisTemplate.opsForZSet().unionAndStore(dayKeys.get(0), dayKeys.subList(1, dayKeys.size()), key);
+            stringRedisTemplate.expire(key, UNION_TTL);
+        }
+
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, 0, n - 1);
+        if (CollectionUtils.isEmpty(tuples)) {
+            return Collections.emptyList();
+        }
+
+        List<Object> members = tuples.stream().map(ZSetOperations.TypedTuple::getValue).collect(Collectors.toList());
+        List<Object> names = stringRedisTemplate.opsForHash().multiGet(NAMES_KEY, members);
+
+        List<GoodsSalesDTO> salesTop = new ArrayList<>();
+        int i = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            Object name = names.get(i++);
+            salesTop.add(new GoodsSalesDTO(name == null ? tuple.getValue() : name.toString(), tuple.getScore().intValue()));
+        }
+        return salesTop;
+    }
+
+    /**
+     * 根据订单数据重建日期区间内每天的销量排行
+     * 每天先写入临时key再重命名，替换过程中查询不会读到不完整的数据；
+     * 重建期间订单完成产生的销量同时记录到每天的增量key，替换后合并，不会被覆盖
+     * @param begin
+     * @param end
+     */
+    public void rebuild(LocalDate begin, LocalDate end) {
+        if (begin == null || end == null || begin.isAfter(end)) {
+            throw new ReportBusinessException(MessageConstant.REPORT_DATE_RANGE_INVALID);
+        }
+        //同一时间只允许一个重建任务
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(REBUILDING_KEY, "1", REBUILD_TIMEOUT))) {
+            throw new ReportBusinessException(MessageConstant.LEADERBOARD_REBUILDING);
+        }
+        try {
+            doRebuild(begin, end);
+        } finally {
+            stringRedisTemplate.delete(REBUILDING_KEY);
+            List<String> deltaKeys = new ArrayList<>();
+            for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+                deltaKeys.add(getDeltaKey(getDayKey(date)));
+            }
+            stringRedisTemplate.delete(deltaKeys);
+        }
+    }
+
+    private void doRebuild(LocalDate begin, LocalDate end) {
+        Map map = new HashMap();
+        map.put("beginTime", LocalDateTime.of(begin, LocalTime.MIN));
+        map.put("endTime", LocalDateTime.of(end, LocalTime.MAX));
+        Map<LocalDate, List<DailyGoodsSalesDTO>> salesMap = orderMapper.sumGoodsSalesGroupByDate(map).stream()
+                .collect(Collectors.groupingBy(DailyGoodsSalesDTO::getStatDate));
+
+        Map<String, String> names = new HashMap<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            String dayKey = getDayKey(date);
+            List<DailyGoodsSalesDTO> salesList = salesMap.get(date);
+            String tempKey = dayKey + ":rebuild";
+            stringRedisTemplate.delete(tempKey);
+            if (!CollectionUtils.isEmpty(salesList)) {
+                Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                for (DailyGoodsSalesDTO sales : salesList) {
+                    String member = getMember(sales);
+                    tuples.add(new DefaultTypedTuple<>(member, sales.getNumber().doubleValue()));
+                    names.put(member, sales.getName());
+                }
+                stringRedisTemplate.opsForZSet().add(tempKey, tuples);
+            }
+
+            stringRedisTemplate.execute(SWAP_SCRIPT, Arrays.asList(tempKey, dayKey, getDeltaKey(dayKey)));
+            expireDayKey(stringRedisTemplate, dayKey, date);
+        }
+
+        if (!names.isEmpty()) {
+            stringRedisTemplate.opsForHash().putAll(NAMES_KEY, names);
+        }
+        log.info("商品销量排行重建完成：{}至{}，共{}天有销量", begin, end, salesMap.size());
+    }
+
+    /**
+     * 日期区间是否都在排行数据的保留期内
+     * @param begin
+     * @return
+     */
+    public boolean covers(LocalDate begin) {
+        return !begin.isBefore(LocalDate.now().minusDays(reportProperties.getLeaderboardRetentionDays() - 1));
+    }
+
+    /**
+     * 累加销量，正在重建时同时累加到增量key
+     * @param salesList
+     */
+    private void increase(List<DailyGoodsSalesDTO> salesList) {
+        if (CollectionUtils.isEmpty(salesList)) {
+            return;
+        }
+
+        Set<LocalDate> dates = new HashSet<>();
+        for (DailyGoodsSalesDTO sales : salesList) {
+            String dayKey = getDayKey(sales.getStatDate());
+            stringRedisTemplate.execute(INCREASE_SCRIPT, Arrays.asList(dayKey, getDeltaKey(dayKey), REBUILDING_KEY),
+                    getMember(sales), String.valueOf(sales.getNumber()), String.valueOf(REBUILD_TIMEOUT.toMillis()));
+            dates.add(sales.getStatDate());
+        }
+
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (DailyGoodsSalesDTO sales : salesList) {
+                    ops.opsForHash().put(NAMES_KEY, getMember(sales), sales.getName());
+                }
+                for (LocalDate date : dates) {
+                    expireDayKey(ops, getDayKey(date), date);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 每天的排行数据在保留期结束后自动过期
+     * @param ops
+     * @param dayKey
+     * @param date
+     */
+    private void expireDayKey(RedisOperations<String, String> ops, String dayKey, LocalDate date) {
+        LocalDateTime expireTime = LocalDateTime.of(date.plusDays(reportProperties.getLeaderboardRetentionDays()), LocalTime.MIN);
+        long seconds = Duration.between(LocalDateTime.now(), expireTime).getSeconds();
+        if (seconds > 0) {
+            ops.expire(dayKey, Duration.ofSeconds(seconds));
+        } else {
+            ops.delete(dayKey);
+        }
+    }
+
+    private String getDayKey(LocalDate date) {
+        return KEY_PREFIX + DAY_FORMATTER.format(date);
+    }
+
+    private String getDeltaKey(String dayKey) {
+        return dayKey + ":delta";
+    }
+
+    private String getMember(DailyGoodsSalesDTO sales) {
+        return sales.getDishId() != null ? "d:" + sales.getDishId() : "s:" + sales.getSetmealId();
+    }
+}
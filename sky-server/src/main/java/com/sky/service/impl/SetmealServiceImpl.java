@@ -10,6 +10,7 @@ import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
+import com.sky.event.MenuChangeEvent;
 import com.sky.exception.DeletionNotAllowedException;
 import com.sky.exception.SetmealEnableFailedException;
 import com.sky.mapper.DishMapper;
@@ -23,6 +24,7 @@ import com.sky.vo.SetmealVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -39,6 +41,8 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
 
     /**
      * 新增套餐数据以及包含的菜品
@@ -65,6 +69,8 @@ public class SetmealServiceImpl implements SetmealService {
 
             setmealDishMapper.insertBatch(setmealDishes);
         }
+
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("setmeal:save"));
     }
 
     /**
@@ -122,6 +128,8 @@ public class SetmealServiceImpl implements SetmealService {
 
         //根据套餐id删除对应的套餐菜品
         setmealDishMapper.deleteBySetmealIds(ids);
+
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("setmeal:delete"));
     }
 
     /**
@@ -147,6 +155,8 @@ public class SetmealServiceImpl implements SetmealService {
             //向套餐菜品表插入n条数据
             setmealDishMapper.insertBatch(setmealDishes);
         }
+
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("setmeal:update"));
     }
 
     /**
@@ -171,6 +181,8 @@ public class SetmealServiceImpl implements SetmealService {
                 .status(status)
                 .build();
         setmealMapper.update(setmeal);
+
+        applicationEventPublisher.publishEvent(new MenuChangeEvent("setmeal:status"));
     }
 
     /**
@@ -1,34 +1,45 @@
 package com.sky.service.impl;
 
+import com.sky.cache.ProductSnapshot;
+import com.sky.cache.ProductSnapshotCache;
+import com.sky.cart.CartStore;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
 import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartBatchDTO;
 import com.sky.dto.ShoppingCartDTO;
-import com.sky.entity.Dish;
-import com.sky.entity.Setmeal;
+import com.sky.dto.ShoppingCartDeltaDTO;
 import com.sky.entity.ShoppingCart;
-import com.sky.mapper.DishMapper;
-import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.service.ShoppingCartService;
+import com.sky.vo.ShoppingCartBatchVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Slf4j
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
-    @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    //一个批次最多包含的商品数
+    private static final int BATCH_MAX_ITEMS = 100;
+
+    //一个商品一次最多变化的数量
+    private static final int BATCH_MAX_DELTA = 99;
 
     @Autowired
-    private DishMapper dishMapper;
+    private CartStore cartStore;
 
     @Autowired
-    private SetmealMapper setmealMapper;
+    private ProductSnapshotCache productSnapshotCache;
 
     /**
      * 添加购物车
@@ -41,36 +52,108 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         Long userId = BaseContext.getCurrentId();
         shoppingCart.setUserId(userId);
 
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
+        add(shoppingCart, 1);
+    }
 
-        //如果已经存在，只需要增加数量
-        if(list != null && list.size()>0){
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
-        }else{
-            //如果不存在，则插入一条购物车数据
-            Long dishId = shoppingCartDTO.getDishId();
-            if(dishId != null){
-                //此次是菜品
-                Dish dish = dishMapper.getById(dishId);
-                shoppingCart.setName(dish.getName());
-                shoppingCart.setImage(dish.getImage());
-                shoppingCart.setAmount(dish.getPrice());
-            }else{
-                //此次是套餐
-                Long setmealId = shoppingCartDTO.getSetmealId();
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-                shoppingCart.setName(setmeal.getName());
-                shoppingCart.setImage(setmeal.getImage());
-                shoppingCart.setAmount(setmeal.getPrice());
+    /**
+     * 批量修改购物车，按客户端版本号去重
+     * 同一商品的多次变化先合并，版本号检查和全部修改由购物车存储一起生效
+     * @param shoppingCartBatchDTO
+     * @return
+     */
+    @Transactional
+    public ShoppingCartBatchVO batch(ShoppingCartBatchDTO shoppingCartBatchDTO){
+        Long userId = BaseContext.getCurrentId();
+        Long version = shoppingCartBatchDTO.getVersion();
+        if(version == null || version < 0){
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_VERSION_INVALID);
+        }
+        List<ShoppingCartDeltaDTO> items = shoppingCartBatchDTO.getItems();
+        if(items == null || items.isEmpty() || items.size() > BATCH_MAX_ITEMS){
+            throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_BATCH_INVALID);
+        }
+
+        //按商品合并数量变化
+        Map<String, ShoppingCart> merged = new LinkedHashMap<>();
+        for(ShoppingCartDeltaDTO item : items){
+            Integer delta = item.getDelta();
+            if(delta == null || Math.abs((long) delta) > BATCH_MAX_DELTA
+                    || (item.getDishId() == null) == (item.getSetmealId() == null)){
+                throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_BATCH_INVALID);
+            }
+            String key = item.getDishId() != null
+                    ? "d:" + item.getDishId() + ":" + item.getDishFlavor()
+                    : "s:" + item.getSetmealId();
+            ShoppingCart shoppingCart = merged.get(key);
+            if(shoppingCart == null){
+                shoppingCart = new ShoppingCart();
+                BeanUtils.copyProperties(item,shoppingCart);
+                shoppingCart.setUserId(userId);
+                shoppingCart.setNumber(0);
+                merged.put(key, shoppingCart);
             }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
+            shoppingCart.setNumber(shoppingCart.getNumber() + delta);
+        }
 
-            shoppingCartMapper.insert(shoppingCart);
+        //增加数量的商品可能是新商品，带上名称、图片和单价
+        List<ShoppingCart> changes = new ArrayList<>(merged.size());
+        for(ShoppingCart shoppingCart : merged.values()){
+            if(shoppingCart.getNumber() == 0){
+                continue;
+            }
+            if(shoppingCart.getNumber() > 0){
+                ProductSnapshot product = getAvailableProduct(shoppingCart);
+                shoppingCart.setName(product.getName());
+                shoppingCart.setImage(product.getImage());
+                shoppingCart.setAmount(product.getPrice());
+                shoppingCart.setCreateTime(LocalDateTime.now());
+            }
+            changes.add(shoppingCart);
         }
 
+        //版本号重复时是重试的重复请求，直接返回当前购物车
+        boolean applied = cartStore.applyBatch(userId, version, changes);
+        return ShoppingCartBatchVO.builder()
+                .version(version)
+                .duplicate(!applied)
+                .items(cartStore.list(userId))
+                .build();
+    }
+
+    /**
+     * 增加商品数量，购物车中没有该商品时使用商品信息插入，商品已停售或不存在时不能增加
+     * @param shoppingCart
+     * @param count
+     */
+    private void add(ShoppingCart shoppingCart, int count){
+        ProductSnapshot product = getAvailableProduct(shoppingCart);
+
+        //如果已经存在，只需要增加数量
+        if(cartStore.increase(shoppingCart, count)){
+            return;
+        }
+
+        //如果不存在，则使用商品快照中的名称、图片和单价，插入一条购物车数据
+        shoppingCart.setName(product.getName());
+        shoppingCart.setImage(product.getImage());
+        shoppingCart.setAmount(product.getPrice());
+        shoppingCart.setNumber(count);
+        shoppingCart.setCreateTime(LocalDateTime.now());
+
+        cartStore.insert(shoppingCart);
+    }
+
+    /**
+     * 从商品快照缓存中查询起售中的商品
+     * @param shoppingCart
+     * @return
+     */
+    private ProductSnapshot getAvailableProduct(ShoppingCart shoppingCart){
+        ProductSnapshot product = productSnapshotCache.get(shoppingCart.getDishId(), shoppingCart.getSetmealId());
+        if(product == null || !StatusConstant.ENABLE.equals(product.getStatus())){
+            throw new ShoppingCartBusinessException(MessageConstant.ORDER_ITEM_UNAVAILABLE);
+        }
+        return product;
     }
 
     /**
@@ -80,9 +163,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
     public List<ShoppingCart> showShoppingCart(){
         Long userId = BaseContext.getCurrentId();
 
-        ShoppingCart shoppingCart = ShoppingCart.builder().userId(userId).build();
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-        return list;
+        return cartStore.list(userId);
     }
 
     /**
@@ -90,7 +171,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
      */
     public void cleanShoppingCart(){
         Long userId = BaseContext.getCurrentId();
-        shoppingCartMapper.deleteByUserId(userId);
+        cartStore.clean(userId);
     }
 
     /**
@@ -104,16 +185,7 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         //设置查询条件，查询当前登录用户的购物车数据
         shoppingCart.setUserId(BaseContext.getCurrentId());
 
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-        ShoppingCart cart = list.get(0);
-        //如果商品大于一个，则只需要更新数量减1
-        if(cart.getNumber() > 1){
-            cart.setNumber(cart.getNumber() - 1);
-            shoppingCartMapper.updateNumberById(cart);//要注意更新到数据库中
-        }else{
-            //如果商品数量等于一，那么就直接删除
-            Long id = cart.getId();
-            shoppingCartMapper.deleteById(id);
-        }
+        //如果商品大于一个，则只需要更新数量减1，如果商品数量等于一，那么就直接删除
+        cartStore.decrease(shoppingCart, 1);
     }
 }
@@ -2,12 +2,14 @@ package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.analytics.LiveMetricsAggregator;
 import com.sky.constant.MessageConstant;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.DailyStatsService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +33,12 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private DailyStatsService dailyStatsService;
+
+    @Autowired
+    private LiveMetricsAggregator liveMetricsAggregator;
+
     /**
      * 微信登录
      * @param userLoginDTO
@@ -55,6 +63,8 @@ public class UserServiceImpl implements UserService {
                     .createTime(LocalDateTime.now())
                     .build();
             userMapper.insert(user);
+            dailyStatsService.increaseNewUsers(user.getCreateTime().toLocalDate());
+            liveMetricsAggregator.increaseNewUsers();
         }
 
         return user;
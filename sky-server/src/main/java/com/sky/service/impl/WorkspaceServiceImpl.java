@@ -1,23 +1,39 @@
 package com.sky.service.impl;
 
-import com.sky.constant.StatusConstant;
-import com.sky.entity.Orders;
+import com.sky.cache.SingleFlightCache;
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.properties.WorkspaceProperties;
+import com.sky.service.DailyStatsService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
+import com.sky.vo.CacheStatsVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceSnapshotVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Service
 @Slf4j
@@ -31,6 +47,22 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private DailyStatsService dailyStatsService;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private WorkspaceProperties workspaceProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor workspaceExecutor;
+
+    //工作台数据短时缓存，多个管理端同时轮询时同一时间窗口内只查询一次数据库
+    private SingleFlightCache<String, Object> overviewCache;
+
+    @PostConstruct
+    public void init() {
+        overviewCache = new SingleFlightCache<>(workspaceProperties.getCacheTtlMillis(), TimeUnit.MILLISECONDS);
+    }
 
     /**
      * 根据时间段统计营业数据
@@ -39,6 +71,17 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public BusinessDataVO getBusinessData(LocalDateTime beginTime, LocalDateTime endTime) {
+        return (BusinessDataVO) overviewCache.get("businessData:" + beginTime + "~" + endTime,
+                () -> loadBusinessData(beginTime, endTime));
+    }
+
+    /**
+     * 查询数据库统计营业数据
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    private BusinessDataVO loadBusinessData(LocalDateTime beginTime, LocalDateTime endTime) {
         /**
          * 营业额：当日已完成订单的总金额
          * 有效订单：当日已完成订单的数量
@@ -47,20 +90,21 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 新增用户：当日新增用户的数量
          */
 
+        //整天的时间段且启用了汇总表时，直接累加每日汇总数据
+        if(reportProperties.isRollupEnabled()
+                && beginTime.toLocalTime().equals(LocalTime.MIN) && endTime.toLocalTime().equals(LocalTime.MAX)){
+            return getBusinessDataFromRollup(beginTime, endTime);
+        }
+
         Map map = new HashMap();
         map.put("beginTime",beginTime);
         map.put("endTime",endTime);
 
-        //查询总订单数
-        Integer totalOrderCount = orderMapper.countByMap(map);
-
-        map.put("status", Orders.COMPLETED);
-        //营业额
-        Double turnover = orderMapper.sumByMap(map);
-        turnover = turnover == null? 0.0 : turnover;
-
-        //有效订单数
-        Integer validOrderCount = orderMapper.countByMap(map);
+        //一次条件聚合查询得到总订单数、有效订单数和营业额
+        DailyOrderStatDTO orderStat = orderMapper.sumStatByMap(map);
+        Integer totalOrderCount = orderStat.getOrderCount();
+        Integer validOrderCount = orderStat.getValidOrderCount();
+        Double turnover = orderStat.getTurnover() == null ? 0.0 : orderStat.getTurnover();
 
         Double unitPrice = 0.0;
 
@@ -85,42 +129,57 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     }
 
 
+    /**
+     * 根据每日汇总数据统计营业数据
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    private BusinessDataVO getBusinessDataFromRollup(LocalDateTime beginTime, LocalDateTime endTime) {
+        List<DailyBusinessStats> statsList = dailyStatsService.list(beginTime.toLocalDate(), endTime.toLocalDate());
+
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        BigDecimal turnover = BigDecimal.ZERO;
+        for (DailyBusinessStats stats : statsList) {
+            totalOrderCount += stats.getTotalOrders();
+            validOrderCount += stats.getCompletedOrders();
+            newUsers += stats.getNewUsers();
+            turnover = turnover.add(stats.getTurnover());
+        }
+
+        Double unitPrice = 0.0;
+        Double orderCompletionRate = 0.0;
+        if(totalOrderCount != 0 && validOrderCount != 0){
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            unitPrice = turnover.doubleValue() / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover.doubleValue())
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
     /**
      * 查询订单管理数据
      *
      * @return
      */
     public OrderOverViewVO getOrderOverView() {
+        return (OrderOverViewVO) overviewCache.get("orderOverView", this::loadOrderOverView);
+    }
+
+    private OrderOverViewVO loadOrderOverView() {
         Map map = new HashMap();
-        map.put("begin", LocalDateTime.now().with(LocalTime.MIN));
-        map.put("status", Orders.TO_BE_CONFIRMED);
-
-        //待接单
-        Integer waitingOrders = orderMapper.countByMap(map);
-
-        //待派送
-        map.put("status", Orders.CONFIRMED);
-        Integer deliveredOrders = orderMapper.countByMap(map);
-
-        //已完成
-        map.put("status", Orders.COMPLETED);
-        Integer completedOrders = orderMapper.countByMap(map);
-
-        //已取消
-        map.put("status", Orders.CANCELLED);
-        Integer cancelledOrders = orderMapper.countByMap(map);
-
-        //全部订单
-        map.put("status", null);
-        Integer allOrders = orderMapper.countByMap(map);
-
-        return OrderOverViewVO.builder()
-                .waitingOrders(waitingOrders)
-                .deliveredOrders(deliveredOrders)
-                .completedOrders(completedOrders)
-                .cancelledOrders(cancelledOrders)
-                .allOrders(allOrders)
-                .build();
+        map.put("beginTime", LocalDateTime.now().with(LocalTime.MIN));
+
+        //一次条件聚合查询得到今日待接单、待派送、已完成、已取消和全部订单数
+        return orderMapper.countOverViewByMap(map);
     }
 
     /**
@@ -129,17 +188,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public DishOverViewVO getDishOverView() {
-        Map map = new HashMap();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = dishMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = dishMapper.countByMap(map);
-
-        return DishOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+        return (DishOverViewVO) overviewCache.get("dishOverView", dishMapper::countOverView);
     }
 
     /**
@@ -148,16 +197,80 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public SetmealOverViewVO getSetmealOverView() {
-        Map map = new HashMap();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = setmealMapper.countByMap(map);
+        return (SetmealOverViewVO) overviewCache.get("setmealOverView", setmealMapper::countOverView);
+    }
+
+    /**
+     * 查询工作台缓存的命中统计
+     * @return
+     */
+    public CacheStatsVO getCacheStats() {
+        return CacheStatsVO.builder()
+                .hits(overviewCache.getHits())
+                .misses(overviewCache.getMisses())
+                .coalesced(overviewCache.getCoalesced())
+                .size(overviewCache.size())
+                .build();
+    }
+
+    /**
+     * 并行查询工作台全部数据，超出时间预算或失败的数据项返回null并记录在missing中
+     * @param beginTime
+     * @param endTime
+     * @return
+     */
+    public WorkspaceSnapshotVO getSnapshot(LocalDateTime beginTime, LocalDateTime endTime) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(workspaceProperties.getSnapshotTimeoutMillis());
 
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = setmealMapper.countByMap(map);
+        CompletableFuture<BusinessDataVO> businessData = submit(() -> getBusinessData(beginTime, endTime));
+        CompletableFuture<OrderOverViewVO> orderOverView = submit(this::getOrderOverView);
+        CompletableFuture<DishOverViewVO> dishOverView = submit(this::getDishOverView);
+        CompletableFuture<SetmealOverViewVO> setmealOverView = submit(this::getSetmealOverView);
 
-        return SetmealOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
+        List<String> missing = new ArrayList<>();
+        return WorkspaceSnapshotVO.builder()
+                .businessData(await(businessData, deadline, "businessData", missing))
+                .orderOverView(await(orderOverView, deadline, "orderOverView", missing))
+                .dishOverView(await(dishOverView, deadline, "dishOverView", missing))
+                .setmealOverView(await(setmealOverView, deadline, "setmealOverView", missing))
+                .missing(missing)
                 .build();
     }
+
+    /**
+     * 提交到工作台线程池执行，线程池已满时直接返回失败的结果
+     * @param supplier
+     * @return
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, workspaceExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 在剩余的时间预算内等待结果
+     * @param future
+     * @param deadline
+     * @param name
+     * @param missing
+     * @return
+     */
+    private <T> T await(CompletableFuture<T> future, long deadline, String name, List<String> missing) {
+        try {
+            long remaining = Math.max(deadline - System.nanoTime(), 0);
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("工作台数据{}未能在时间预算内返回:{}", name, e.toString());
+        }
+        future.cancel(false);
+        missing.add(name);
+        return null;
+    }
 }
@@ -0,0 +1,39 @@
+package com.sky.task;
+
+import com.sky.annotation.ScheduledLease;
+import com.sky.properties.ReportProperties;
+import com.sky.service.DailyStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@Component
+@Slf4j
+public class DailyStatsTask {
+
+    @Autowired
+    private DailyStatsService dailyStatsService;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    /**
+     * 每天凌晨2点半对账最近几天的每日汇总数据
+     */
+    @Scheduled(cron = "0 30 2 * * ?")
+    @ScheduledLease(value = "dailyStatsTask:reconcileDailyStats", minHoldMillis = 300000)
+    public void reconcileDailyStats() {
+        if (!reportProperties.isRollupEnabled()) {
+            return;
+        }
+
+        LocalDate end = LocalDate.now().minusDays(1);
+        LocalDate begin = end.minusDays(reportProperties.getRollupReconcileDays() - 1);
+        log.info("对账每日汇总数据:{}至{}", begin, end);
+
+        dailyStatsService.rebuild(begin, end);
+    }
+}
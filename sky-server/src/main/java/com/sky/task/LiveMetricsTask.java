@@ -0,0 +1,55 @@
+package com.sky.task;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.analytics.LiveMetricsAggregator;
+import com.sky.websocket.WebSocketServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 实时营业数据推送
+ */
+@Component
+@Slf4j
+public class LiveMetricsTask {
+
+    @Autowired
+    private LiveMetricsAggregator liveMetricsAggregator;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    /**
+     * 定期从数据库重新加载今日数据，修正增量无法覆盖的部分，启动时也会执行一次
+     */
+    @Scheduled(fixedDelayString = "${sky.workspace.live-reload-millis:600000}")
+    public void reload() {
+        try {
+            liveMetricsAggregator.reload();
+        } catch (Exception e) {
+            log.error("重新加载今日实时营业数据失败", e);
+        }
+    }
+
+    /**
+     * 每秒最多推送一次，数据没有变化且没有新订阅者时不推送
+     */
+    @Scheduled(fixedRate = 1000)
+    public void push() {
+        boolean newSubscriber = webSocketServer.takeNewSubscriber();
+        boolean changed = liveMetricsAggregator.takeChanged();
+        if (!webSocketServer.hasMetricsSubscribers() || (!changed && !newSubscriber)) {
+            return;
+        }
+
+        Map map = new HashMap();
+        map.put("type", 3);//3是实时营业数据
+        map.put("content", liveMetricsAggregator.snapshot());
+        webSocketServer.sendToMetricsSubscribers(JSON.toJSONString(map));
+    }
+}
@@ -1,58 +1,40 @@
 package com.sky.task;
 
-import com.sky.entity.Orders;
-import com.sky.mapper.OrderMapper;
+import com.sky.annotation.ScheduledLease;
+import com.sky.order.OrderStateMachine;
+import com.sky.order.OrderTransition;
+import com.sky.properties.OrderProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Component
 @Slf4j
 public class OrderTask {
 
     @Autowired
-    private OrderMapper orderMapper;
+    private OrderStateMachine orderStateMachine;
 
-    /**
-     * 处理超时订单
-     */
-    @Scheduled(cron = "0 0/5 * * * ?")
-    public void processTimeOutOrder() {
-        log.info("定时处理超时订单:{}", LocalDateTime.now());
-
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, LocalDateTime.now().plusMinutes(-15));
-
-        if(ordersList != null && ordersList.size() > 0) {
-            for(Orders order : ordersList) {
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason("订单超时，自动取消。");
-                order.setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
-            }
-        }
-
-    }
+    @Autowired
+    private OrderProperties orderProperties;
 
     /**
      * 每天凌晨1点处理“派送中”订单
      */
     @Scheduled(cron = "0 0 1 * * ?")
     //@Scheduled(cron = "0/5 * * * * *")
+    @ScheduledLease(value = "orderTask:processDeliveryOrder", minHoldMillis = 300000)
     public void processDeliveryOrder() {
         log.info("处理一直处于“派送中的订单:{}", LocalDateTime.now());
+        long start = System.currentTimeMillis();
 
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().plusHours(-1));
+        int rows = orderStateMachine.fireByOrderTimeBefore(OrderTransition.COMPLETE,
+                LocalDateTime.now().plusHours(-1), null, orderProperties.getTaskChunkSize());
 
-        if(ordersList != null && ordersList.size() > 0) {
-            for(Orders order : ordersList) {
-                order.setStatus(Orders.COMPLETED);
-                orderMapper.update(order);
-            }
-        }
+        log.info("派送中订单处理完成，完成订单数：{}，耗时：{}ms", rows, System.currentTimeMillis() - start);
     }
 
 }
@@ -8,8 +8,10 @@ import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * WebSocket服务
@@ -18,8 +20,18 @@ import java.util.Map;
 @ServerEndpoint("/ws/{sid}")
 public class WebSocketServer {
 
+    //订阅实时营业数据的消息
+    public static final String SUBSCRIBE_METRICS = "subscribe:metrics";
+    public static final String UNSUBSCRIBE_METRICS = "unsubscribe:metrics";
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static Map<String, Session> sessionMap = new ConcurrentHashMap<>();
+
+    //订阅了实时营业数据的会话
+    private static Set<String> metricsSubscribers = ConcurrentHashMap.newKeySet();
+
+    //是否有新的订阅者还没有收到数据
+    private static AtomicBoolean newSubscriber = new AtomicBoolean();
 
     /**
      * 连接建立成功调用的方法
@@ -38,6 +50,12 @@ public class WebSocketServer {
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
         System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        if (SUBSCRIBE_METRICS.equals(message)) {
+            metricsSubscribers.add(sid);
+            newSubscriber.set(true);
+        } else if (UNSUBSCRIBE_METRICS.equals(message)) {
+            metricsSubscribers.remove(sid);
+        }
     }
 
     /**
@@ -49,6 +67,7 @@ public class WebSocketServer {
     public void onClose(@PathParam("sid") String sid) {
         System.out.println("连接断开:" + sid);
         sessionMap.remove(sid);
+        metricsSubscribers.remove(sid);
     }
 
     /**
@@ -59,12 +78,56 @@ public class WebSocketServer {
     public void sendToAllClient(String message) {
         Collection<Session> sessions = sessionMap.values();
         for (Session session : sessions) {
-            try {
+            send(session, message);
+        }
+    }
+
+    /**
+     * 向订阅了实时营业数据的客户端发送消息
+     *
+     * @param message
+     */
+    public void sendToMetricsSubscribers(String message) {
+        for (String sid : metricsSubscribers) {
+            Session session = sessionMap.get(sid);
+            if (session != null) {
+                send(session, message);
+            }
+        }
+    }
+
+    /**
+     * 是否有订阅了实时营业数据的客户端
+     *
+     * @return
+     */
+    public boolean hasMetricsSubscribers() {
+        return !metricsSubscribers.isEmpty();
+    }
+
+    /**
+     * 取出并清除新订阅标记
+     *
+     * @return
+     */
+    public boolean takeNewSubscriber() {
+        return newSubscriber.getAndSet(false);
+    }
+
+    /**
+     * 同一会话不能并发发送，按会话加锁
+     *
+     * @param session
+     * @param message
+     */
+    private void send(Session session, String message) {
+        try {
+            synchronized (session) {
                 //服务器向客户端发送消息
                 session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
     }
 
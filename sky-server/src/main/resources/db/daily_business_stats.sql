@@ -0,0 +1,11 @@
+-- 每日营业数据汇总表，由订单状态变化和用户注册增量维护，并由 DailyStatsTask 每晚对账
+CREATE TABLE IF NOT EXISTS `daily_business_stats` (
+  `biz_date`         date           NOT NULL COMMENT '营业日期',
+  `total_orders`     int            NOT NULL DEFAULT 0 COMMENT '订单总数',
+  `completed_orders` int            NOT NULL DEFAULT 0 COMMENT '已完成订单数',
+  `cancelled_orders` int            NOT NULL DEFAULT 0 COMMENT '已取消订单数',
+  `turnover`         decimal(14, 2) NOT NULL DEFAULT 0 COMMENT '营业额',
+  `new_users`        int            NOT NULL DEFAULT 0 COMMENT '新增用户数',
+  `update_time`      datetime                DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`biz_date`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '每日营业数据汇总';
@@ -0,0 +1,5 @@
+-- 订单游标分页按 (order_time, id) 倒序定位，以下索引使各筛选条件下的翻页都是索引范围扫描
+-- InnoDB 二级索引末尾隐含主键 id，无需显式加入
+CREATE INDEX `idx_orders_order_time` ON `orders` (`order_time`);
+CREATE INDEX `idx_orders_user_order_time` ON `orders` (`user_id`, `order_time`);
+CREATE INDEX `idx_orders_status_order_time` ON `orders` (`status`, `order_time`);
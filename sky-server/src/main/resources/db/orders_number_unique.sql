@@ -0,0 +1,4 @@
+-- 订单号改为雪花算法生成后全局唯一，为 number 列加唯一索引，支付回调按订单号查询走唯一索引
+-- 执行前先确认历史数据中没有重复订单号：
+-- SELECT number, count(*) FROM orders GROUP BY number HAVING count(*) > 1;
+ALTER TABLE `orders` ADD UNIQUE INDEX `uk_orders_number` (`number`);
@@ -0,0 +1,15 @@
+-- 购物车中同一用户的同一商品（菜品+口味 或 套餐）只保留一行，加购使用 INSERT ... ON DUPLICATE KEY UPDATE 累加数量
+-- dish_id、setmeal_id、dish_flavor 可能为NULL，唯一索引不约束NULL值，因此增加一个把NULL转为空串的生成列参与唯一索引
+-- 执行前先合并历史数据中的重复商品：
+UPDATE `shopping_cart` c
+    JOIN (SELECT min(id) AS id, sum(number) AS total FROM `shopping_cart`
+          GROUP BY user_id, dish_id, setmeal_id, dish_flavor HAVING count(*) > 1) d ON c.id = d.id
+SET c.number = d.total;
+DELETE c FROM `shopping_cart` c
+    JOIN `shopping_cart` k ON c.user_id = k.user_id AND c.dish_id <=> k.dish_id
+        AND c.setmeal_id <=> k.setmeal_id AND c.dish_flavor <=> k.dish_flavor AND c.id > k.id;
+
+ALTER TABLE `shopping_cart`
+    ADD COLUMN `item_key` varchar(100) GENERATED ALWAYS AS
+        (concat(ifnull(dish_id, ''), ':', ifnull(setmeal_id, ''), ':', ifnull(dish_flavor, ''))) STORED,
+    ADD UNIQUE INDEX `uk_shopping_cart_user_item` (`user_id`, `item_key`);
@@ -0,0 +1,6 @@
+-- 购物车批量修改的版本号（sky.cart.store=db 时使用），与购物车修改在同一事务中推进，重复提交的批次不会重复修改购物车
+CREATE TABLE IF NOT EXISTS `shopping_cart_version` (
+  `user_id` bigint NOT NULL COMMENT '用户id',
+  `version` bigint NOT NULL COMMENT '已处理的最大批次版本号',
+  PRIMARY KEY (`user_id`)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4 COMMENT = '购物车批量修改版本号';